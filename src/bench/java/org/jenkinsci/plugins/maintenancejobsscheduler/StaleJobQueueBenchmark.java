@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the sweep queue takes in the builds of a synthetic tree and hands out the stale jobs.
+ *
+ * Each operation fills a new queue with every job, rebuilds half of them and polls the stale ones.
+ *
+ * @author Victor Martinez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaleJobQueueBenchmark {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"1000", "10000", "100000"})
+    public int jobs;
+
+    private String[] names;
+    private long[] lastBuilds;
+    private long purgeTime;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int teams = Math.max(1, jobs / 100);
+        long now = System.currentTimeMillis();
+        names = new String[jobs];
+        lastBuilds = new long[jobs];
+        for (int i = 0; i < jobs; i++) {
+            names[i] = "team-" + (i % teams) + "/project-" + i;
+            lastBuilds[i] = now - random.nextInt(730) * DAY;
+        }
+        purgeTime = now - 90 * DAY;
+    }
+
+    @Benchmark
+    public void offerAndPoll(Blackhole bh) {
+        StaleJobQueue queue = new StaleJobQueue();
+        for (int i = 0; i < jobs; i++) {
+            queue.offer(names[i], lastBuilds[i]);
+        }
+        // new builds leave outdated entries behind in the queue
+        for (int i = 0; i < jobs; i += 2) {
+            queue.offer(names[i], lastBuilds[i] + DAY);
+        }
+        bh.consume(queue.poll(purgeTime));
+    }
+}
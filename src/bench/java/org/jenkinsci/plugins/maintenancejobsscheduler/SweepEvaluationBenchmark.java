@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the decision the sweep takes for every job of a synthetic tree, that is the staleness
+ * check and the exclusion matching, which is what a sweep spends its time on besides the disk.
+ *
+ * Each operation evaluates every job once, so the score is in sweeps per second.
+ * Narrow down the parameters with e.g. {@code -Djmh.args="-p jobs=10000 -p rules=100 -prof gc"}.
+ *
+ * @author Victor Martinez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepEvaluationBenchmark {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"1000", "10000", "100000"})
+    public int jobs;
+
+    @Param({"10", "100", "500"})
+    public int rules;
+
+    private String[] names;
+    private Long[] lastBuilds;
+    private Boolean[] disabled;
+    private String excludedJobs;
+    private SweepCriteria criteria;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int teams = Math.max(1, jobs / 100);
+        long now = System.currentTimeMillis();
+        names = new String[jobs];
+        lastBuilds = new Long[jobs];
+        disabled = new Boolean[jobs];
+        for (int i = 0; i < jobs; i++) {
+            names[i] = "team-" + (i % teams) + "/project-" + i + (i % 3 == 0 ? "-deploy" : "");
+            // roughly one job out of ten was never built, the others have been idle for up to two years
+            lastBuilds[i] = random.nextInt(10) == 0 ? null : now - random.nextInt(730) * DAY;
+            disabled[i] = random.nextInt(20) == 0;
+        }
+        excludedJobs = createRules(random);
+        criteria = new SweepCriteria(90, excludedJobs, false);
+    }
+
+    /**
+     * A mix of plain job names, prefixes, suffixes and general regular expressions,
+     * about a quarter of each.
+     */
+    private String createRules(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rules; i++) {
+            int job = random.nextInt(jobs);
+            switch (i % 4) {
+                case 0:
+                    sb.append(names[job]);
+                    break;
+                case 1:
+                    sb.append("team-").append(job).append("/.*");
+                    break;
+                case 2:
+                    sb.append(".*-").append(job).append("-deploy");
+                    break;
+                default:
+                    sb.append("team-[0-9]+/project-").append(job).append("(-deploy)?");
+                    break;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole bh) {
+        for (int i = 0; i < names.length; i++) {
+            bh.consume(criteria.evaluate(names[i], lastBuilds[i], disabled[i]));
+        }
+    }
+
+    @Benchmark
+    public void exclusions(Blackhole bh) {
+        ExclusionMatcher matcher = criteria.getExclusions();
+        for (String name : names) {
+            bh.consume(matcher.matches(name));
+        }
+    }
+
+    /**
+     * The exclusion matching as it used to be done: every rule compiled again for every job.
+     */
+    @Benchmark
+    public void exclusionsPerRule(Blackhole bh) {
+        String[] split = excludedJobs.split("\n");
+        for (String name : names) {
+            boolean excluded = false;
+            for (String rule : split) {
+                if (Pattern.compile(rule).matcher(name).matches()) {
+                    excluded = true;
+                    break;
+                }
+            }
+            bh.consume(excluded);
+        }
+    }
+}
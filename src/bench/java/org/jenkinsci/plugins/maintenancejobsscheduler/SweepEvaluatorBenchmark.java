@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the concurrent evaluation of jobs whose evaluation waits for the disk, simulated by
+ * a one millisecond sleep per job, which is what loading a job from cold storage roughly costs.
+ *
+ * Each operation evaluates every job once. Compare e.g. {@code -p concurrency=1} with {@code -p concurrency=256},
+ * on a JDK with virtual threads and without.
+ *
+ * @author Victor Martinez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepEvaluatorBenchmark {
+
+    @Param({"5000"})
+    public int jobs;
+
+    @Param({"1", "16", "256"})
+    public int concurrency;
+
+    private List<String> names;
+    private List<SweepEvaluator.Task<String>> tasks;
+
+    @Setup
+    public void setUp() {
+        names = new ArrayList<String>(jobs);
+        tasks = new ArrayList<SweepEvaluator.Task<String>>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            final String name = "project-" + i;
+            names.add(name);
+            tasks.add(new SweepEvaluator.Task<String>() {
+                public String call() throws InterruptedException {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                    return name;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public List<String> evaluate() throws InterruptedException {
+        return new SweepEvaluator("benchmark", concurrency).evaluate(names, tasks);
+    }
+}
@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.Run;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes the old builds of a job, as a central alternative to the build discarder of each job.
+ *
+ * The build directories are listed by name, and only the builds about to be deleted are loaded. Builds
+ * are named after their start time up to Jenkins 1.596 and after their number since, in which case their
+ * start time is read from their build.xml. A build is deleted when it is older than the purge time and
+ * beyond the most recent ones to keep. The last build, the builds kept forever and the running ones
+ * are never deleted.
+ *
+ * @author Victor Martinez
+ */
+final class BuildPruner {
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern ID = Pattern.compile("\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}");
+    // a child of the root element, not of an action
+    private static final Pattern TIMESTAMP = Pattern.compile("  <timestamp>(\\d+)</timestamp>\\s*");
+
+    private final long purgeTime;
+    private final int keepBuilds;
+
+    /**
+     * @param purgeTime
+     *            builds started before this time are deleted, unless they are among the most recent ones kept.
+     * @param keepBuilds
+     *            number of most recent builds kept whatever their age, 0 to delete every build old enough.
+     */
+    BuildPruner(long purgeTime, int keepBuilds) {
+        this.purgeTime = purgeTime;
+        this.keepBuilds = keepBuilds;
+    }
+
+    /**
+     * Deletes the old builds of the given job.
+     *
+     * @param executor
+     *            throttles the deletions.
+     * @return the number of deleted builds.
+     */
+    int prune(Job<?, ?> job, SweepExecutor executor) throws IOException, InterruptedException {
+        int pruned = 0;
+        for (BuildDir candidate : getCandidates(job.getBuildDir())) {
+            Run<?, ?> run = job.getBuild(candidate.name);
+            if (run == null || run.isKeepLog() || run.isBuilding()) {
+                continue;
+            }
+            executor.throttle();
+            run.delete();
+            pruned++;
+        }
+        return pruned;
+    }
+
+    /**
+     * Gets the build directories to delete, oldest first.
+     */
+    List<BuildDir> getCandidates(File buildDir) throws IOException {
+        String[] names = buildDir.list();
+        List<BuildDir> builds = new ArrayList<BuildDir>();
+        if (names == null) {
+            return builds;
+        }
+        for (String name : names) {
+            boolean id = ID.matcher(name).matches();
+            if (!id && !NUMBER.matcher(name).matches()) {
+                continue;
+            }
+            File dir = new File(buildDir, name);
+            // number links of the builds named after their start time
+            if (Util.isSymlink(dir) || !dir.isDirectory()) {
+                continue;
+            }
+            builds.add(new BuildDir(name, id ? parseId(name, dir) : readTimestamp(dir)));
+        }
+        // newest first
+        Collections.sort(builds);
+        List<BuildDir> candidates = new ArrayList<BuildDir>();
+        for (int i = builds.size() - 1; i > 0; i--) {
+            BuildDir build = builds.get(i);
+            // the most recent builds are kept whatever their age, the others once old enough
+            if (i >= keepBuilds && build.time < purgeTime) {
+                candidates.add(build);
+            }
+        }
+        return candidates;
+    }
+
+    private static long parseId(String name, File dir) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").parse(name).getTime();
+        } catch (ParseException e) {
+            return dir.lastModified();
+        }
+    }
+
+    private static long readTimestamp(File dir) throws IOException {
+        File xml = new File(dir, "build.xml");
+        if (!xml.isFile()) {
+            return dir.lastModified();
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(xml), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher matcher = TIMESTAMP.matcher(line);
+                if (matcher.matches()) {
+                    return Long.parseLong(matcher.group(1));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return xml.lastModified();
+    }
+
+    /**
+     * A build directory along with the start time of its build.
+     */
+    static final class BuildDir implements Comparable<BuildDir> {
+        private final String name;
+        private final long time;
+
+        BuildDir(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Most recent first.
+         */
+        public int compareTo(BuildDir other) {
+            return time < other.time ? 1 : time > other.time ? -1 : 0;
+        }
+    }
+}
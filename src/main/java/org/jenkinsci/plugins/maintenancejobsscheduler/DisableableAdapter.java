@@ -0,0 +1,147 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Knows how to disable a given kind of {@link Job}.
+ *
+ * Core only offers disabling for {@link AbstractProject}, other job types, such as pipelines,
+ * can be supported by contributing an implementation of this extension point.
+ *
+ * @author Victor Martinez
+ */
+public abstract class DisableableAdapter implements ExtensionPoint {
+
+    /**
+     * Gets whether this adapter can handle the given job.
+     */
+    public abstract boolean isApplicable(Job<?, ?> job);
+
+    public abstract boolean isDisabled(Job<?, ?> job);
+
+    /**
+     * Disables or enables the given job. Implementations may save the job, callers wanting
+     * a single save wrap this call in a {@link hudson.BulkChange}.
+     */
+    public abstract void setDisabled(Job<?, ?> job, boolean disabled) throws IOException;
+
+    /**
+     * Gets the adapter for the given job.
+     *
+     * @return the first applicable adapter, or null if the job can't be disabled.
+     */
+    public static DisableableAdapter of(Job<?, ?> job) {
+        for (DisableableAdapter adapter : Jenkins.getInstance().getExtensionList(DisableableAdapter.class)) {
+            if (adapter.isApplicable(job)) {
+                return adapter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Freestyle, matrix, maven and the other {@link AbstractProject} jobs.
+     */
+    @Extension(ordinal = 100)
+    public static final class AbstractProjectAdapter extends DisableableAdapter {
+
+        @Override
+        public boolean isApplicable(Job<?, ?> job) {
+            return job instanceof AbstractProject;
+        }
+
+        @Override
+        public boolean isDisabled(Job<?, ?> job) {
+            return ((AbstractProject<?, ?>) job).isDisabled();
+        }
+
+        @Override
+        public void setDisabled(Job<?, ?> job, boolean disabled) throws IOException {
+            ((AbstractProject<?, ?>) job).makeDisabled(disabled);
+        }
+    }
+
+    /**
+     * Any other job exposing public {@code isDisabled()} and {@code makeDisabled(boolean)}
+     * or {@code setDisabled(boolean)} methods, such as pipeline jobs.
+     */
+    @Extension(ordinal = -100)
+    public static final class ReflectiveAdapter extends DisableableAdapter {
+
+        private static final Method[] NONE = new Method[0];
+
+        private final ConcurrentMap<Class<?>, Method[]> methods = new ConcurrentHashMap<Class<?>, Method[]>();
+
+        private Method[] methodsOf(Job<?, ?> job) {
+            Class<?> type = job.getClass();
+            Method[] found = methods.get(type);
+            if (found == null) {
+                found = NONE;
+                try {
+                    Method isDisabled = type.getMethod("isDisabled");
+                    Method setDisabled = findSetter(type);
+                    if (isDisabled.getReturnType() == boolean.class && setDisabled != null) {
+                        found = new Method[] {isDisabled, setDisabled};
+                    }
+                } catch (NoSuchMethodException e) {
+                    // not disableable
+                }
+                methods.put(type, found);
+            }
+            return found;
+        }
+
+        private static Method findSetter(Class<?> type) {
+            for (String name : new String[] {"makeDisabled", "setDisabled"}) {
+                try {
+                    return type.getMethod(name, boolean.class);
+                } catch (NoSuchMethodException e) {
+                    // try the next one
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isApplicable(Job<?, ?> job) {
+            return methodsOf(job).length > 0;
+        }
+
+        @Override
+        public boolean isDisabled(Job<?, ?> job) {
+            try {
+                return (Boolean) invoke(methodsOf(job)[0], job);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void setDisabled(Job<?, ?> job, boolean disabled) throws IOException {
+            invoke(methodsOf(job)[1], job, disabled);
+        }
+
+        private static Object invoke(Method method, Job<?, ?> job, Object... args) throws IOException {
+            try {
+                return method.invoke(job, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException("Unable to call " + method + " on " + job.getFullName(), e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled form of the excluded jobs, one regular expression per line.
+ *
+ * Plain job names are looked up in a hash set, simple {@code name.*} and {@code .*name} rules
+ * go to prefix and suffix tries, and the remaining regular expressions are merged into a single
+ * alternation, so matching a job costs roughly the length of its name whatever the number of rules.
+ *
+ * @author Victor Martinez
+ */
+public final class ExclusionMatcher {
+
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+    static final ExclusionMatcher NONE = new ExclusionMatcher(Collections.<String>emptyList());
+
+    private final List<String> rules;
+    // the pattern of each rule, null when it is invalid
+    private final List<Pattern> rulePatterns = new ArrayList<Pattern>();
+    private final Set<String> names = new HashSet<String>();
+    private final Trie prefixes = new Trie();
+    private final Trie suffixes = new Trie();
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+    private final Map<String, String> errors = new LinkedHashMap<String, String>();
+
+    private ExclusionMatcher(List<String> rules) {
+        this.rules = Collections.unmodifiableList(rules);
+        List<Pattern> regexes = new ArrayList<Pattern>();
+        for (String rule : rules) {
+            Pattern pattern = null;
+            try {
+                pattern = Pattern.compile(rule);
+                if (isLiteral(rule)) {
+                    names.add(rule);
+                } else if (isPrefix(rule)) {
+                    prefixes.add(rule.substring(rule.startsWith("^") ? 1 : 0, rule.length() - 2));
+                } else if (isSuffix(rule)) {
+                    suffixes.add(new StringBuilder(rule.substring(2, rule.length() - (rule.endsWith("$") ? 1 : 0))).reverse());
+                } else if (BACK_REFERENCE.matcher(rule).find()) {
+                    // group numbers would shift once merged with the other rules
+                    patterns.add(pattern);
+                } else {
+                    regexes.add(pattern);
+                }
+            } catch (PatternSyntaxException pse) {
+                errors.put(rule, pse.getDescription());
+            }
+            rulePatterns.add(pattern);
+        }
+        addAlternation(regexes);
+    }
+
+    private void addAlternation(List<Pattern> regexes) {
+        if (regexes.size() < 2) {
+            patterns.addAll(regexes);
+            return;
+        }
+        StringBuilder alternation = new StringBuilder();
+        for (Pattern regex : regexes) {
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(regex.pattern()).append(')');
+        }
+        try {
+            patterns.add(Pattern.compile(alternation.toString()));
+        } catch (PatternSyntaxException pse) {
+            // e.g. an unterminated \Q quote swallowing the closing parenthesis
+            patterns.addAll(regexes);
+        }
+    }
+
+    /**
+     * Compiles the given excluded jobs.
+     *
+     * @param excludedJobs
+     *            one regular expression per line, may be null.
+     */
+    public static ExclusionMatcher of(String excludedJobs) {
+        if (StringUtils.isBlank(excludedJobs)) {
+            return NONE;
+        }
+        return new ExclusionMatcher(split(excludedJobs));
+    }
+
+    private static List<String> split(String excludedJobs) {
+        List<String> rules = new ArrayList<String>();
+        for (String line : excludedJobs.split("\n")) {
+            String rule = line.trim();
+            if (rule.length() > 0) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Gets whether the given job name is excluded.
+     *
+     * If any of the rules is not a valid regular expression every job is excluded, so that
+     * a typo never widens the set of jobs the maintenance applies to.
+     */
+    public boolean matches(String name) {
+        if (!errors.isEmpty()) {
+            return true;
+        }
+        if (names.contains(name) || prefixes.matchesStartOf(name, false) || suffixes.matchesStartOf(name, true)) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the rules this matcher was compiled from.
+     */
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Gets the invalid rules along with the description of their syntax error.
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Counts the names matching each rule, and those matching any rule, in a single pass over the names.
+     *
+     * Plain names and prefixes are counted with binary searches. The other rules are only tried on
+     * the names matching any rule, and the pass stops at the given deadline.
+     *
+     * @param sortedNames
+     *            the job names, sorted.
+     * @param deadline
+     *            time after which the pass is cut short.
+     */
+    Counts count(String[] sortedNames, long deadline) {
+        if (!isValid()) {
+            throw new IllegalStateException("Invalid rules: " + errors.keySet());
+        }
+        Counts counts = new Counts(rules.size(), sortedNames.length);
+        List<Integer> others = new ArrayList<Integer>();
+        for (int i = 0; i < rules.size(); i++) {
+            String rule = rules.get(i);
+            if (isLiteral(rule)) {
+                counts.perRule[i] = Arrays.binarySearch(sortedNames, rule) >= 0 ? 1 : 0;
+            } else if (isPrefix(rule)) {
+                String prefix = rule.substring(rule.startsWith("^") ? 1 : 0, rule.length() - 2);
+                counts.perRule[i] = insertionPoint(sortedNames, prefix + Character.MAX_VALUE) - insertionPoint(sortedNames, prefix);
+            } else {
+                others.add(i);
+            }
+        }
+        for (String name : sortedNames) {
+            if ((counts.checked & 0xff) == 0 && counts.checked > 0 && System.currentTimeMillis() > deadline) {
+                return counts;
+            }
+            counts.checked++;
+            if (matches(name)) {
+                counts.total++;
+                for (int i : others) {
+                    if (rulePatterns.get(i).matcher(name).matches()) {
+                        counts.perRule[i]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static int insertionPoint(String[] sortedNames, String key) {
+        int index = Arrays.binarySearch(sortedNames, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static boolean isLiteral(String rule) {
+        return StringUtils.containsNone(rule, META_CHARACTERS);
+    }
+
+    private static boolean isPrefix(String rule) {
+        int start = rule.startsWith("^") ? 1 : 0;
+        return rule.endsWith(".*") && rule.length() > start + 2 && isLiteral(rule.substring(start, rule.length() - 2));
+    }
+
+    private static boolean isSuffix(String rule) {
+        int end = rule.length() - (rule.endsWith("$") ? 1 : 0);
+        return rule.startsWith(".*") && end > 2 && isLiteral(rule.substring(2, end));
+    }
+
+    /**
+     * Result of {@link #count(String[], long)}.
+     */
+    static final class Counts {
+
+        private final int[] perRule;
+        private final int size;
+        private int total;
+        private int checked;
+
+        Counts(int rules, int size) {
+            this.perRule = new int[rules];
+            this.size = size;
+        }
+
+        /**
+         * Gets the number of names matching the rule at the given position.
+         */
+        int getCount(int rule) {
+            return perRule[rule];
+        }
+
+        /**
+         * Gets the number of names matching any rule, each name being counted once.
+         */
+        int getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the number of names the pass went through.
+         */
+        int getChecked() {
+            return checked;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        boolean isComplete() {
+            return checked == size;
+        }
+    }
+
+    /**
+     * Character trie telling whether a name starts, or ends when read backwards, with any of the added words.
+     */
+    private static final class Trie {
+
+        private final Map<Character, Trie> children = new HashMap<Character, Trie>();
+        private boolean terminal;
+
+        void add(CharSequence word) {
+            Trie node = this;
+            for (int i = 0; i < word.length(); i++) {
+                Character c = word.charAt(i);
+                Trie child = node.children.get(c);
+                if (child == null) {
+                    child = new Trie();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        boolean matchesStartOf(String name, boolean backwards) {
+            Trie node = this;
+            int length = name.length();
+            for (int i = 0; i < length && !node.terminal; i++) {
+                node = node.children.get(name.charAt(backwards ? length - 1 - i : i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.terminal;
+        }
+    }
+}
@@ -2,26 +2,36 @@ package org.jenkinsci.plugins.maintenancejobsscheduler;
 
 import antlr.ANTLRException;
 import hudson.Extension;
-import hudson.model.TopLevelItem;
+import hudson.Util;
+import hudson.model.Item;
 import hudson.scheduler.CronTabList;
 import hudson.util.FormValidation;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.Messages;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Descriptor for global configuration.
@@ -32,13 +42,41 @@ import java.util.regex.PatternSyntaxException;
 public final class GlobalPluginConfiguration extends GlobalConfiguration {
 
     private static final String PLUGIN_NAME = Messages.PluginName();
+    private static final long PREVIEW_TIME_BOX = TimeUnit.SECONDS.toMillis(5);
+    private static final long VALIDATION_TIME_BOX = 300;
 
     private boolean enable = false;
     private boolean removeJobs = false;
+    private boolean dryRun = false;
     private String filter;
     private String disabledSpec;
     private String excludedJobs;
+    private String selector;
     private String description = Messages.Description();
+    private int workerThreads = 1;
+    private int evaluationThreads = 0;
+    private int actionsPerSecond = 0;
+    // no longer used, still read from older configurations
+    @Deprecated
+    private transient int saveBatchSize;
+    private int reclaimFilesPerSecond = 500;
+    private int reclaimMegabytesPerSecond = 100;
+    private int spaceTarget = 0;
+    private String archiveDirectory;
+    private String sharedDirectory;
+    private int leaseMinutes = 60;
+    private int retainedReports = 200;
+    private String windowEnd;
+    private boolean adaptivePacing = false;
+    private int busyExecutorsPercent = 80;
+    private int busyQueueLength = 10;
+    private int busyDiskMillis = 100;
+    private boolean queueSignal = false;
+    private boolean upstreamSignal = false;
+    private boolean configChangeSignal = false;
+    private boolean scmPollSignal = false;
+    private List<MaintenancePolicy> policies = new ArrayList<MaintenancePolicy>();
+    private transient volatile ExclusionMatcher excludedJobsMatcher;
 
     /**
      * Creates GlobalPluginConfiguration instance with specified parameters.
@@ -68,8 +106,22 @@ public final class GlobalPluginConfiguration extends GlobalConfiguration {
 
     @Override
     public boolean configure(StaplerRequest req, JSONObject json) throws hudson.model.Descriptor.FormException {
+        // a form without any policy doesn't bind the list at all
+        policies = new ArrayList<MaintenancePolicy>();
         req.bindJSON(this, json);
+        Set<String> names = new HashSet<String>();
+        excludedJobsMatcher = ExclusionMatcher.of(excludedJobs);
+        for (MaintenancePolicy policy : getEffectivePolicies()) {
+            if (!names.add(policy.getName())) {
+                throw new FormException(Messages.policy_name_duplicated(policy.getName()), "policies");
+            }
+            // compile the rules once, every sweep of the policy reuses them
+            policy.getIncludedJobsMatcher();
+            policy.getExcludedJobsMatcher();
+        }
+        StaleJobQueue.Registry.get().retain(names);
         save();
+        MaintenanceScheduler.get().rearm();
         return true;
     }
 
@@ -110,6 +162,19 @@ public final class GlobalPluginConfiguration extends GlobalConfiguration {
 
     public void setExcludedJobs(String excludedJobs) {
         this.excludedJobs = excludedJobs;
+        this.excludedJobsMatcher = null;
+    }
+
+    /**
+     * Gets the compiled form of {@link #getExcludedJobs()}.
+     */
+    public ExclusionMatcher getExcludedJobsMatcher() {
+        ExclusionMatcher result = excludedJobsMatcher;
+        if (result == null) {
+            result = ExclusionMatcher.of(excludedJobs);
+            excludedJobsMatcher = result;
+        }
+        return result;
     }
 
     public String getFilter() {
@@ -136,6 +201,294 @@ public final class GlobalPluginConfiguration extends GlobalConfiguration {
         this.removeJobs = removeJobs;
     }
 
+    /**
+     * Gets whether the scheduled runs only log what they would do.
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Gets the number of threads used to process the jobs, at least one.
+     */
+    public int getWorkerThreads() {
+        return Math.max(1, workerThreads);
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Gets the maximum number of jobs evaluated concurrently before any of them is acted on,
+     * 0 means each job is evaluated by the worker thread acting on it.
+     */
+    public int getEvaluationThreads() {
+        return evaluationThreads;
+    }
+
+    public void setEvaluationThreads(int evaluationThreads) {
+        this.evaluationThreads = evaluationThreads;
+    }
+
+    /**
+     * Gets the maximum number of jobs disabled or removed per second, 0 means unlimited.
+     */
+    public int getActionsPerSecond() {
+        return actionsPerSecond;
+    }
+
+    public void setActionsPerSecond(int actionsPerSecond) {
+        this.actionsPerSecond = actionsPerSecond;
+    }
+
+    /**
+     * Gets the time of day, as HH:mm, after which a run acts on no more jobs, blank means unlimited.
+     * The jobs left over are looked at first by the next run.
+     */
+    public String getWindowEnd() {
+        return windowEnd;
+    }
+
+    public void setWindowEnd(String windowEnd) {
+        this.windowEnd = Util.fixEmptyAndTrim(windowEnd);
+    }
+
+    /**
+     * Gets whether the actions slow down, and pause, while the instance is busy, see {@link SweepPacer}.
+     */
+    public boolean isAdaptivePacing() {
+        return adaptivePacing;
+    }
+
+    public void setAdaptivePacing(boolean adaptivePacing) {
+        this.adaptivePacing = adaptivePacing;
+    }
+
+    /**
+     * Gets the percentage of busy executors above which the actions pause, 0 means the executors are ignored.
+     */
+    public int getBusyExecutorsPercent() {
+        return busyExecutorsPercent;
+    }
+
+    public void setBusyExecutorsPercent(int busyExecutorsPercent) {
+        this.busyExecutorsPercent = busyExecutorsPercent;
+    }
+
+    /**
+     * Gets the number of buildable items in the queue above which the actions pause, 0 means the queue is ignored.
+     */
+    public int getBusyQueueLength() {
+        return busyQueueLength;
+    }
+
+    public void setBusyQueueLength(int busyQueueLength) {
+        this.busyQueueLength = busyQueueLength;
+    }
+
+    /**
+     * Gets the duration of a small synced write above which the actions pause, 0 means the disk is ignored.
+     */
+    public int getBusyDiskMillis() {
+        return busyDiskMillis;
+    }
+
+    public void setBusyDiskMillis(int busyDiskMillis) {
+        this.busyDiskMillis = busyDiskMillis;
+    }
+
+    /**
+     * Gets the conditions on the attributes of the jobs, see {@link MaintenancePolicy#getSelector()}.
+     */
+    public String getSelector() {
+        return selector;
+    }
+
+    public void setSelector(String selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Gets the number of megabytes to reclaim per run, see {@link MaintenancePolicy#getSpaceTarget()}.
+     */
+    public int getSpaceTarget() {
+        return spaceTarget;
+    }
+
+    public void setSpaceTarget(int spaceTarget) {
+        this.spaceTarget = spaceTarget;
+    }
+
+    /**
+     * Gets the number of runs whose report is kept, 0 means runs don't write a report.
+     */
+    public int getRetainedReports() {
+        return retainedReports;
+    }
+
+    public void setRetainedReports(int retainedReports) {
+        this.retainedReports = retainedReports;
+    }
+
+    /**
+     * Gets the directory where the removed jobs are archived first, none if blank.
+     */
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public void setArchiveDirectory(String archiveDirectory) {
+        this.archiveDirectory = Util.fixEmptyAndTrim(archiveDirectory);
+    }
+
+    /**
+     * Gets the directory shared with other instances to coordinate the maintenance, none if blank.
+     */
+    public String getSharedDirectory() {
+        return sharedDirectory;
+    }
+
+    public void setSharedDirectory(String sharedDirectory) {
+        this.sharedDirectory = Util.fixEmptyAndTrim(sharedDirectory);
+    }
+
+    /**
+     * Gets the number of minutes an instance keeps the lease of heavy work without renewing it.
+     */
+    public int getLeaseMinutes() {
+        return leaseMinutes;
+    }
+
+    public void setLeaseMinutes(int leaseMinutes) {
+        this.leaseMinutes = leaseMinutes;
+    }
+
+    /**
+     * Gets whether queued and building jobs aren't stale, see {@link StalenessSignal.QueueSignal}.
+     */
+    public boolean isQueueSignal() {
+        return queueSignal;
+    }
+
+    public void setQueueSignal(boolean queueSignal) {
+        this.queueSignal = queueSignal;
+    }
+
+    /**
+     * Gets whether jobs with recently built upstream jobs aren't stale, see {@link StalenessSignal.UpstreamSignal}.
+     */
+    public boolean isUpstreamSignal() {
+        return upstreamSignal;
+    }
+
+    public void setUpstreamSignal(boolean upstreamSignal) {
+        this.upstreamSignal = upstreamSignal;
+    }
+
+    /**
+     * Gets whether recently configured jobs aren't stale, see {@link StalenessSignal.ConfigChangeSignal}.
+     */
+    public boolean isConfigChangeSignal() {
+        return configChangeSignal;
+    }
+
+    public void setConfigChangeSignal(boolean configChangeSignal) {
+        this.configChangeSignal = configChangeSignal;
+    }
+
+    /**
+     * Gets whether jobs with recent SCM changes aren't stale, see {@link StalenessSignal.ScmPollSignal}.
+     */
+    public boolean isScmPollSignal() {
+        return scmPollSignal;
+    }
+
+    public void setScmPollSignal(boolean scmPollSignal) {
+        this.scmPollSignal = scmPollSignal;
+    }
+
+    /**
+     * Gets the additional maintenance policies.
+     */
+    public List<MaintenancePolicy> getPolicies() {
+        return policies == null ? Collections.<MaintenancePolicy>emptyList() : Collections.unmodifiableList(policies);
+    }
+
+    public void setPolicies(List<MaintenancePolicy> policies) {
+        this.policies = new ArrayList<MaintenancePolicy>(policies);
+    }
+
+    /**
+     * Gets the policy made of the settings at the top of the configuration.
+     *
+     * @return the policy, or null if the number of days isn't set.
+     */
+    public MaintenancePolicy getDefaultPolicy() {
+        MaintenancePolicy policy;
+        try {
+            policy = new MaintenancePolicy(MaintenancePolicy.DEFAULT_NAME, disabledSpec, Integer.parseInt(filter), null,
+                    excludedJobs, removeJobs ? MaintenanceAction.REMOVE : MaintenanceAction.DISABLE);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        policy.setSpaceTarget(spaceTarget);
+        policy.setSelector(selector);
+        policy.setExcludedJobsMatcher(getExcludedJobsMatcher());
+        return policy;
+    }
+
+    /**
+     * Gets every policy, the default one first.
+     */
+    public List<MaintenancePolicy> getEffectivePolicies() {
+        List<MaintenancePolicy> all = new ArrayList<MaintenancePolicy>();
+        MaintenancePolicy defaultPolicy = getDefaultPolicy();
+        if (defaultPolicy != null) {
+            all.add(defaultPolicy);
+        }
+        all.addAll(getPolicies());
+        return all;
+    }
+
+    /**
+     * Gets the policy with the given name, null if there is none.
+     */
+    public MaintenancePolicy getPolicy(String name) {
+        for (MaintenancePolicy policy : getEffectivePolicies()) {
+            if (policy.getName().equals(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the maximum number of files of the removed jobs deleted per second, 0 means unlimited.
+     */
+    public int getReclaimFilesPerSecond() {
+        return reclaimFilesPerSecond;
+    }
+
+    public void setReclaimFilesPerSecond(int reclaimFilesPerSecond) {
+        this.reclaimFilesPerSecond = reclaimFilesPerSecond;
+    }
+
+    /**
+     * Gets the maximum number of megabytes of the removed jobs deleted per second, 0 means unlimited.
+     */
+    public int getReclaimMegabytesPerSecond() {
+        return reclaimMegabytesPerSecond;
+    }
+
+    public void setReclaimMegabytesPerSecond(int reclaimMegabytesPerSecond) {
+        this.reclaimMegabytesPerSecond = reclaimMegabytesPerSecond;
+    }
+
     /**
      * Gets this extension's instance.
      *
@@ -182,36 +535,59 @@ public final class GlobalPluginConfiguration extends GlobalConfiguration {
      * Check the regular expression entered by the user
      */
     public FormValidation doCheckExcludedJobs(@QueryParameter String value) {
-        List<String> listJobs = null;
-        if(StringUtils.isNotBlank(value)) {
-            listJobs = Arrays.asList(value.split("\n"));
-        }
-        if (listJobs!=null) {
-            boolean found = false;
-            int numberOfProjects = 0;
-            for (String excluded : listJobs) {
-                try {
-                    Pattern search = Pattern.compile(excluded);
-                    for (TopLevelItem item : Jenkins.getInstance().getItems()) {
-                        if (search.matcher(item.getName()).matches()) {
-                            found = true;
-                            numberOfProjects++;
-                        }
-                    }
-                } catch (PatternSyntaxException pse) {
-                    return FormValidation.error("Invalid regular expression [" +
-                            excluded + "] exception: " +
-                            pse.getDescription());
-                }
-            }
-            if (!found) {
-                return FormValidation.warning(Messages.no_jobs());
-            } else {
-                return FormValidation.ok(Messages.there_are_jobs(numberOfProjects));
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        // compiled apart from the saved settings, the value changes at every keystroke
+        ExclusionMatcher matcher = ExclusionMatcher.of(value);
+        if (!matcher.isValid()) {
+            Map.Entry<String, String> error = matcher.getErrors().entrySet().iterator().next();
+            return FormValidation.error("Invalid regular expression [" +
+                    error.getKey() + "] exception: " +
+                    error.getValue());
+        }
+        if (!Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER)) {
+            // every job is counted, including those the user can't see
+            return FormValidation.ok();
+        }
+        ExclusionMatcher.Counts counts = matcher.count(JobNameSnapshot.get().getNames(),
+                System.currentTimeMillis() + VALIDATION_TIME_BOX);
+        if (counts.isComplete() && counts.getTotal() == 0) {
+            return FormValidation.warning(Messages.no_jobs());
+        }
+        StringBuilder markup = new StringBuilder(Util.escape(counts.isComplete()
+                ? Messages.there_are_jobs(counts.getTotal())
+                : Messages.there_are_jobs_so_far(counts.getTotal(), counts.getChecked(), counts.getSize())));
+        List<String> rules = matcher.getRules();
+        if (rules.size() > 1) {
+            markup.append("<ul>");
+            for (int i = 0; i < rules.size(); i++) {
+                markup.append("<li>").append(Util.escape(Messages.jobs_per_rule(rules.get(i), counts.getCount(i)))).append("</li>");
             }
-        }else{
+            markup.append("</ul>");
+        }
+        return FormValidation.okWithMarkup(markup.toString());
+    }
+
+    /**
+     * Check the job selector entered by the user
+     */
+    public FormValidation doCheckSelector(@QueryParameter String value) {
+        JobSelector jobSelector = JobSelector.of(value);
+        if (jobSelector.isEmpty()) {
             return FormValidation.ok();
         }
+        if (!jobSelector.isValid()) {
+            Map.Entry<String, String> error = jobSelector.getErrors().entrySet().iterator().next();
+            return FormValidation.error("Invalid condition [" + error.getKey() + "]: " + error.getValue());
+        }
+        if (!Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER)) {
+            // every job is counted, including those the user can't see
+            return FormValidation.ok();
+        }
+        JobAttributeIndex index = JobAttributeIndex.get();
+        int count = jobSelector.resolve(index).count(index.getAllJobs());
+        return count == 0 ? FormValidation.warning(Messages.no_jobs()) : FormValidation.ok(Messages.there_are_jobs(count));
     }
 
     /**
@@ -238,6 +614,287 @@ public final class GlobalPluginConfiguration extends GlobalConfiguration {
         return FormValidation.ok();
     }
 
+    /**
+     * Check the number of worker threads entered by the user
+     */
+    public FormValidation doCheckWorkerThreads(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    /**
+     * Check the number of evaluation threads entered by the user
+     */
+    public FormValidation doCheckEvaluationThreads(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the number of actions per second entered by the user
+     */
+    public FormValidation doCheckActionsPerSecond(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the end of the maintenance window entered by the user
+     */
+    public FormValidation doCheckWindowEnd(@QueryParameter String value) {
+        if (Util.fixEmptyAndTrim(value) != null && SweepPacer.parseTimeOfDay(value) < 0) {
+            return FormValidation.error(Messages.window_end_invalid());
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Check the percentage of busy executors entered by the user
+     */
+    public FormValidation doCheckBusyExecutorsPercent(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the queue length entered by the user
+     */
+    public FormValidation doCheckBusyQueueLength(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the disk duration entered by the user
+     */
+    public FormValidation doCheckBusyDiskMillis(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the space target entered by the user
+     */
+    public FormValidation doCheckSpaceTarget(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the number of reports entered by the user
+     */
+    public FormValidation doCheckRetainedReports(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the archive directory entered by the user
+     */
+    public FormValidation doCheckArchiveDirectory(@QueryParameter String value) {
+        // looks at the file system of the controller
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        File dir = new File(value.trim());
+        if (!dir.isAbsolute()) {
+            return FormValidation.error(Messages.archive_directory_not_absolute());
+        }
+        if (!dir.exists()) {
+            return FormValidation.ok(Messages.archive_directory_created());
+        }
+        if (!dir.isDirectory() || !dir.canWrite()) {
+            return FormValidation.error(Messages.archive_directory_not_writable());
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Check the shared directory entered by the user
+     */
+    public FormValidation doCheckSharedDirectory(@QueryParameter String value) {
+        // looks at the file system of the controller
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        File dir = new File(value.trim());
+        if (!dir.isAbsolute()) {
+            return FormValidation.error(Messages.shared_directory_not_absolute());
+        }
+        if (!dir.isDirectory() || !dir.canWrite()) {
+            return FormValidation.error(Messages.shared_directory_not_writable());
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Check the lease duration entered by the user
+     */
+    public FormValidation doCheckLeaseMinutes(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    /**
+     * Check the number of files deleted per second entered by the user
+     */
+    public FormValidation doCheckReclaimFilesPerSecond(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Check the number of megabytes deleted per second entered by the user
+     */
+    public FormValidation doCheckReclaimMegabytesPerSecond(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * Streams what the maintenance would do with each job with the saved configuration, one page at a time.
+     *
+     * @param format
+     *            either json (default) or csv.
+     * @param start
+     *            position of the first job of the page.
+     * @param limit
+     *            maximum number of jobs in the page.
+     * @param policy
+     *            name of the policy, the default one if not given.
+     */
+    public void doPreview(StaplerResponse rsp, @QueryParameter String format, @QueryParameter int start,
+                          @QueryParameter int limit, @QueryParameter String policy) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        MaintenancePolicy selected = getPolicy(StringUtils.isBlank(policy) ? MaintenancePolicy.DEFAULT_NAME : policy);
+        if (selected == null) {
+            if (StringUtils.isBlank(policy)) {
+                rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid numeric [" + filter + "]");
+            } else {
+                rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "No such policy [" + policy + "]");
+            }
+            return;
+        }
+        SweepPreview.Format type = "csv".equalsIgnoreCase(format) ? SweepPreview.Format.CSV : SweepPreview.Format.JSON;
+        rsp.setContentType(type.getContentType());
+        new SweepPreview(selected.toCriteria()).write(rsp.getWriter(), type, Math.max(0, start),
+                limit > 0 ? Math.min(limit, SweepPreview.MAX_LIMIT) : SweepPreview.DEFAULT_LIMIT,
+                System.currentTimeMillis() + PREVIEW_TIME_BOX);
+    }
+
+    /**
+     * Exposes the counters and timers of the maintenance sweeps as JSON.
+     */
+    public void doMetrics(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(SweepMetrics.get().toJSON().toString());
+    }
+
+    /**
+     * Lists the archives of the removed jobs as JSON.
+     */
+    public void doArchives(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(JSONArray.fromObject(JobArchiver.get().list()).toString());
+    }
+
+    /**
+     * Restores a removed job from its archive.
+     *
+     * @param archive
+     *            name of the archive, as listed by {@link #doArchives}.
+     */
+    @RequirePOST
+    public void doRestore(StaplerResponse rsp, @QueryParameter String archive) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        Item item;
+        try {
+            item = JobArchiver.get().restore(archive);
+        } catch (IOException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.getWriter().write(item.getFullName());
+    }
+
+    /**
+     * Streams the summary of the sweeps of every instance sharing the configured directory.
+     */
+    public void doSummary(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (SharedStorageCoordinator.getSharedDir() == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "No shared directory is configured");
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        SharedStorageCoordinator.get().writeSummary(rsp.getOutputStream());
+    }
+
+    /**
+     * Lists the IDs of the runs with a report, the most recent first, as JSON.
+     */
+    public void doReports(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(JSONArray.fromObject(SweepReport.getRuns(SweepReport.getDir())).toString());
+    }
+
+    /**
+     * Pages through the report of a run, as JSON by default.
+     *
+     * @param run
+     *            ID of the run, as listed by {@link #doReports}, the most recent one if not given.
+     */
+    public void doReport(StaplerResponse rsp, @QueryParameter String run, @QueryParameter String format,
+                         @QueryParameter int start, @QueryParameter int limit) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        File dir = SweepReport.getDir();
+        if (StringUtils.isBlank(run)) {
+            List<String> runs = SweepReport.getRuns(dir);
+            if (runs.isEmpty()) {
+                rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "No report yet");
+                return;
+            }
+            run = runs.get(0);
+        }
+        if (!SweepReport.exists(dir, run)) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "No such report [" + run + "]");
+            return;
+        }
+        boolean csv = "csv".equalsIgnoreCase(format);
+        rsp.setContentType(csv ? "text/csv;charset=UTF-8" : "application/json;charset=UTF-8");
+        SweepReport.write(dir, run, rsp.getWriter(), csv, Math.max(0, start),
+                limit > 0 ? Math.min(limit, SweepReport.MAX_LIMIT) : SweepReport.DEFAULT_LIMIT);
+    }
+
+    /**
+     * Lists the IDs of the runs whose disabled jobs can be enabled again, the most recent first, as JSON.
+     */
+    public void doRuns(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(JSONArray.fromObject(UndoLog.getRuns()).toString());
+    }
+
+    /**
+     * Enables the jobs disabled by a run again, with their original description.
+     *
+     * @param run
+     *            ID of the run, as listed by {@link #doRuns}, the most recent one if not given.
+     */
+    @RequirePOST
+    public FormValidation doUndo(@QueryParameter String run) throws IOException, InterruptedException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (StringUtils.isBlank(run)) {
+            List<String> runs = UndoLog.getRuns();
+            if (runs.isEmpty()) {
+                return FormValidation.ok(Messages.nothing_to_undo());
+            }
+            run = runs.get(0);
+        }
+        int enabled;
+        try {
+            enabled = UndoLog.undo(run, new SweepExecutor("MaintenanceJobsScheduler undo", getWorkerThreads(), getActionsPerSecond()));
+        } catch (IOException e) {
+            return FormValidation.error(e.getMessage());
+        }
+        return FormValidation.ok(Messages.jobs_enabled_again(enabled, run));
+    }
+
     public String toString() {
         return " disabledSpec - " + (disabledSpec !=null ? disabledSpec : "nothing") +
                " enable - " + enable;
@@ -0,0 +1,353 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TopLevelItem;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.DirectlyModifiableTopLevelItemGroup;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archives the directory of a job into a zip file before it is removed, and restores it afterwards.
+ *
+ * Files are streamed from their channel into the archive through a fixed size buffer, whatever their size.
+ * The archive is written under a temporary name, synced and read back entirely, so that a job is only
+ * removed once its archive is known to be complete. Symbolic links and the workspace aren't archived,
+ * the former are created again by Jenkins and the latter by the next build.
+ *
+ * The first entry of an archive is the directory named after the full name of the job.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class JobArchiver {
+
+    private static final Logger LOGGER = Logger.getLogger(JobArchiver.class.getName());
+
+    static final String EXTENSION = ".zip";
+    private static final String PART = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static JobArchiver get() {
+        return Jenkins.getInstance().getExtensionList(JobArchiver.class).get(0);
+    }
+
+    /**
+     * Gets the configured directory of the archives.
+     *
+     * @return the directory, or null if the removed jobs aren't archived.
+     */
+    static File getArchiveDir() {
+        String dir = GlobalPluginConfiguration.get().getArchiveDirectory();
+        return StringUtils.isBlank(dir) ? null : new File(dir.trim());
+    }
+
+    /**
+     * Gets the names of the archives, oldest first for each job.
+     */
+    public List<String> list() {
+        File dir = getArchiveDir();
+        String[] names = dir == null ? null : dir.list();
+        List<String> archives = new ArrayList<String>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(EXTENSION)) {
+                    archives.add(name);
+                }
+            }
+        }
+        return archives;
+    }
+
+    /**
+     * Archives the directory of the given job.
+     *
+     * @return the verified archive.
+     * @throws IOException
+     *             if the archive couldn't be written or read back, in which case nothing is left behind.
+     */
+    public File archive(Job<?, ?> job) throws IOException {
+        File dir = getArchiveDir();
+        if (dir == null) {
+            throw new IOException("No archive directory is configured");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        String fullName = job.getFullName();
+        File archive = new File(dir, Util.rawEncode(fullName.replace('/', '.')) + "-" + System.currentTimeMillis() + EXTENSION);
+        File part = new File(dir, archive.getName() + PART);
+        boolean done = false;
+        try {
+            Tally written = write(job.getRootDir(), fullName, part);
+            Tally read = verify(part, fullName);
+            if (read.entries != written.entries || read.bytes != written.bytes) {
+                throw new IOException("Archive " + part + " holds " + read.entries + " entries and " + read.bytes +
+                        " bytes instead of " + written.entries + " entries and " + written.bytes + " bytes");
+            }
+            if (!part.renameTo(archive)) {
+                throw new IOException("Unable to rename " + part + " to " + archive);
+            }
+            done = true;
+            LOGGER.log(Level.FINER, "Archived job '" + fullName + "' into " + archive + ", " + written.bytes + " bytes");
+            return archive;
+        } finally {
+            if (!done && part.exists() && !part.delete()) {
+                LOGGER.log(Level.WARNING, "Unable to delete " + part);
+            }
+        }
+    }
+
+    private Tally write(File root, String fullName, File part) throws IOException {
+        Tally tally = new Tally();
+        FileOutputStream out = new FileOutputStream(part);
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        try {
+            // throughput matters more than size here
+            zip.setLevel(Deflater.BEST_SPEED);
+            WritableByteChannel sink = Channels.newChannel(zip);
+            String prefix = fullName + "/";
+            addDirectory(zip, root, prefix, tally);
+            File[] children = root.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (!"workspace".equals(child.getName())) {
+                        add(zip, sink, child, prefix + child.getName(), tally);
+                    }
+                }
+            }
+            zip.finish();
+            zip.flush();
+            out.getChannel().force(true);
+        } finally {
+            zip.close();
+        }
+        return tally;
+    }
+
+    private void addDirectory(ZipOutputStream zip, File dir, String name, Tally tally) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(dir.lastModified());
+        zip.putNextEntry(entry);
+        zip.closeEntry();
+        tally.entries++;
+    }
+
+    private void add(ZipOutputStream zip, WritableByteChannel sink, File file, String name, Tally tally) throws IOException {
+        if (Util.isSymlink(file)) {
+            return;
+        }
+        if (file.isDirectory()) {
+            addDirectory(zip, file, name + "/", tally);
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    add(zip, sink, child, name + "/" + child.getName(), tally);
+                }
+            }
+            return;
+        }
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(file.lastModified());
+        zip.putNextEntry(entry);
+        FileChannel in = new FileInputStream(file).getChannel();
+        try {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, sink);
+            }
+            tally.bytes += position;
+        } finally {
+            in.close();
+        }
+        zip.closeEntry();
+        tally.entries++;
+    }
+
+    /**
+     * Reads the whole archive back, checking the CRC of every entry.
+     */
+    private Tally verify(File part, String fullName) throws IOException {
+        Tally tally = new Tally();
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(part), BUFFER_SIZE));
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ZipEntry entry = zip.getNextEntry();
+            if (entry == null || !entry.getName().equals(fullName + "/")) {
+                throw new IOException("Archive " + part + " doesn't start with the directory of job '" + fullName + "'");
+            }
+            for (; entry != null; entry = zip.getNextEntry()) {
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    tally.bytes += read;
+                }
+                tally.entries++;
+            }
+        } finally {
+            zip.close();
+        }
+        return tally;
+    }
+
+    /**
+     * Restores a job from one of the archives.
+     *
+     * The job is extracted next to its final location, then moved there and loaded.
+     * Its folder must still exist, and it must not have been created again since.
+     *
+     * @param name
+     *            the name of the archive, as given by {@link #list()}.
+     * @return the restored job.
+     */
+    public Item restore(String name) throws IOException {
+        File dir = getArchiveDir();
+        if (dir == null) {
+            throw new IOException("No archive directory is configured");
+        }
+        if (name == null || !name.endsWith(EXTENSION) || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+            throw new IOException("Invalid archive name [" + name + "]");
+        }
+        File archive = new File(dir, name);
+        if (!archive.isFile()) {
+            throw new IOException("No such archive [" + name + "]");
+        }
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE));
+        try {
+            ZipEntry entry = zip.getNextEntry();
+            if (entry == null || !entry.isDirectory()) {
+                throw new IOException("Archive [" + name + "] doesn't start with the directory of a job");
+            }
+            String prefix = entry.getName();
+            String fullName = prefix.substring(0, prefix.length() - 1);
+            int slash = fullName.lastIndexOf('/');
+            String jobName = fullName.substring(slash + 1);
+            DirectlyModifiableTopLevelItemGroup parent = getParent(slash < 0 ? null : fullName.substring(0, slash));
+            if (parent.getItem(jobName) != null) {
+                throw new IOException("Job '" + fullName + "' already exists");
+            }
+            File target = new File(new File(parent.getRootDir(), "jobs"), jobName);
+            File extracted = new File(target.getParentFile(), "." + jobName + ".restoring");
+            if (target.exists()) {
+                throw new IOException(target + " already exists");
+            }
+            if (extracted.exists()) {
+                Util.deleteRecursive(extracted);
+            }
+            extract(zip, prefix, extracted);
+            if (!extracted.renameTo(target)) {
+                Util.deleteRecursive(extracted);
+                throw new IOException("Unable to rename " + extracted + " to " + target);
+            }
+            Item item = Items.load(parent, target);
+            if (!(item instanceof TopLevelItem)) {
+                throw new IOException("Archive [" + name + "] doesn't hold a job");
+            }
+            parent.add((TopLevelItem) item, jobName);
+            // indexed before being queued, otherwise the job would look like it has never been built
+            for (Job<?, ?> job : item.getAllJobs()) {
+                Run<?, ?> lastBuild = job.getLastBuild();
+                if (lastBuild != null) {
+                    LastBuildIndex.get().record(job.getFullName(), lastBuild.getTimeInMillis());
+                }
+            }
+            ItemListener.fireOnCreated(item);
+            LOGGER.log(Level.INFO, "Restored job '" + fullName + "' from " + archive);
+            return item;
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static DirectlyModifiableTopLevelItemGroup getParent(String fullName) throws IOException {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (fullName == null) {
+            return jenkins;
+        }
+        Item parent = jenkins.getItemByFullName(fullName);
+        if (!(parent instanceof DirectlyModifiableTopLevelItemGroup)) {
+            throw new IOException("No folder '" + fullName + "' to restore the job into");
+        }
+        return (DirectlyModifiableTopLevelItemGroup) parent;
+    }
+
+    private void extract(ZipInputStream zip, String prefix, File dir) throws IOException {
+        if (!dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        String root = dir.getCanonicalPath() + File.separator;
+        ReadableByteChannel source = Channels.newChannel(zip);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            if (!entry.getName().startsWith(prefix)) {
+                throw new IOException("Unexpected entry [" + entry.getName() + "]");
+            }
+            File file = new File(dir, entry.getName().substring(prefix.length()));
+            // no entry may escape the directory of the job
+            if (!(file.getCanonicalPath() + File.separator).startsWith(root)) {
+                throw new IOException("Invalid entry [" + entry.getName() + "]");
+            }
+            if (entry.isDirectory()) {
+                if (!file.isDirectory() && !file.mkdirs()) {
+                    throw new IOException("Unable to create " + file);
+                }
+                continue;
+            }
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                FileChannel channel = out.getChannel();
+                long position = 0;
+                long read;
+                while ((read = channel.transferFrom(source, position, BUFFER_SIZE)) > 0) {
+                    position += read;
+                }
+            } finally {
+                out.close();
+            }
+            if (entry.getTime() != -1 && !file.setLastModified(entry.getTime())) {
+                LOGGER.log(Level.FINE, "Unable to set the modification time of " + file);
+            }
+        }
+    }
+
+    private static final class Tally {
+        private long entries;
+        private long bytes;
+    }
+}
@@ -0,0 +1,515 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.TopLevelItem;
+import hudson.model.View;
+import hudson.model.ViewGroup;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory inverted index of the attributes of the jobs, used to resolve the {@link JobSelector}s.
+ *
+ * The index is built once the jobs are loaded, on a thread of its own and without holding the lock, so the
+ * listeners keeping it up to date never wait for it; what they record meanwhile wins over what the build found.
+ * The result of the last build comes from the {@link LastBuildIndex}, no build record is read from disk.
+ * View membership depends on the configuration of the views, so it is computed again on first use after
+ * items or views have changed.
+ *
+ * Once built, the jobs whose attributes change are queued again in the {@link StaleJobQueue}s, since they
+ * may now be selected by a policy that left them alone so far.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class JobAttributeIndex implements JobSelector.Index {
+
+    /**
+     * Indexed attributes, named by the key used in the selectors.
+     */
+    public enum Attribute {
+        /** Name of a view showing the job. */
+        VIEW,
+        /** Label expression the job is tied to. */
+        LABEL,
+        /** Simple class name of the job, e.g. FreeStyleProject. */
+        TYPE,
+        /** Full name of a folder the job is in, directly or not. */
+        FOLDER,
+        /** Part of the key of the SCM of the job, typically its repository URLs. */
+        SCM,
+        /** Result of the last completed build, e.g. FAILURE. */
+        RESULT;
+
+        public String getKey() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+
+        /**
+         * Gets the attribute with the given key.
+         *
+         * @return the attribute, or null if there is none.
+         */
+        public static Attribute of(String key) {
+            for (Attribute attribute : values()) {
+                if (attribute.getKey().equals(key)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(JobAttributeIndex.class.getName());
+
+    // full names of the jobs by attribute value, by attribute
+    private final Map<Attribute, Map<String, Set<String>>> index = new EnumMap<Attribute, Map<String, Set<String>>>(Attribute.class);
+    // attribute values by attribute, by job full name, to update the above
+    private final Map<String, Map<Attribute, Set<String>>> jobs = new HashMap<String, Map<Attribute, Set<String>>>();
+    private boolean loaded = false;
+    private boolean loading = false;
+    // jobs indexed, and items removed, while the index is being built: what the build found about them is stale
+    private final Set<String> indexedWhileLoading = new HashSet<String>();
+    private final Set<String> removedWhileLoading = new HashSet<String>();
+    private boolean viewsChanged = true;
+    private boolean viewsIndexed = false;
+
+    public JobAttributeIndex() {
+        for (Attribute attribute : Attribute.values()) {
+            index.put(attribute, new HashMap<String, Set<String>>());
+        }
+    }
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static JobAttributeIndex get() {
+        return Jenkins.getInstance().getExtensionList(JobAttributeIndex.class).get(0);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        get().startLoading();
+    }
+
+    /**
+     * Gets the full names of the jobs with the given attribute value, waiting for the index to be built if needed.
+     *
+     * @return a copy of the names.
+     */
+    public synchronized Set<String> getJobs(Attribute attribute, String value) {
+        awaitLoaded();
+        if (attribute == Attribute.VIEW && viewsChanged) {
+            indexViews();
+        }
+        Set<String> names = index.get(attribute).get(value);
+        return names == null ? new HashSet<String>() : new HashSet<String>(names);
+    }
+
+    /**
+     * Gets the full names of every indexed job.
+     *
+     * @return a copy of the names.
+     */
+    public synchronized Set<String> getAllJobs() {
+        awaitLoaded();
+        return new HashSet<String>(jobs.keySet());
+    }
+
+    /**
+     * Starts building the index on a thread of its own, unless it is already built or being built.
+     */
+    synchronized void startLoading() {
+        if (loaded || loading) {
+            return;
+        }
+        loading = true;
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                load();
+            }
+        }, "MaintenanceJobsScheduler attribute index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void awaitLoaded() {
+        while (!loaded) {
+            startLoading();
+            try {
+                // releases the lock, so the listeners go on while the index is built
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void load() {
+        Map<String, Map<Attribute, Set<String>>> found = new HashMap<String, Map<Attribute, Set<String>>>();
+        // every job, whoever asks
+        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            LastBuildIndex lastBuilds = LastBuildIndex.get();
+            for (Job<?, ?> job : new JobTraversal(Jenkins.getInstance())) {
+                Map<Attribute, Set<String>> attributes = attributesOf(job);
+                String result = lastBuilds.getLastResult(job.getFullName());
+                if (result != null) {
+                    attributes.put(Attribute.RESULT, new HashSet<String>(Collections.singleton(result)));
+                }
+                found.put(job.getFullName(), attributes);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to index every job, selectors may miss some of them", e);
+        } finally {
+            SecurityContextHolder.setContext(old);
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Map<Attribute, Set<String>>> entry : found.entrySet()) {
+                String fullName = entry.getKey();
+                if (isRemovedWhileLoading(fullName)) {
+                    continue;
+                }
+                boolean indexed = indexedWhileLoading.contains(fullName);
+                boolean resultSet = !get(fullName, Attribute.RESULT).isEmpty();
+                for (Map.Entry<Attribute, Set<String>> attribute : entry.getValue().entrySet()) {
+                    // the attributes indexed by the listeners meanwhile are more recent
+                    if (attribute.getKey() == Attribute.RESULT ? resultSet : indexed) {
+                        continue;
+                    }
+                    for (String value : attribute.getValue()) {
+                        put(fullName, attribute.getKey(), value);
+                    }
+                }
+            }
+            indexedWhileLoading.clear();
+            removedWhileLoading.clear();
+            loaded = true;
+            loading = false;
+            notifyAll();
+        }
+    }
+
+    private boolean isRemovedWhileLoading(String fullName) {
+        for (String name = fullName; name != null; name = name.contains("/") ? name.substring(0, name.lastIndexOf('/')) : null) {
+            if (removedWhileLoading.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the attributes of the given job held in memory, all but its views and the result of its last build.
+     */
+    private static Map<Attribute, Set<String>> attributesOf(Job<?, ?> job) {
+        Map<Attribute, Set<String>> attributes = new EnumMap<Attribute, Set<String>>(Attribute.class);
+        attributes.put(Attribute.TYPE, new HashSet<String>(Collections.singleton(job.getClass().getSimpleName())));
+        Set<String> folders = new HashSet<String>();
+        for (ItemGroup<?> parent = job.getParent(); parent instanceof Item; parent = ((Item) parent).getParent()) {
+            folders.add(((Item) parent).getFullName());
+        }
+        attributes.put(Attribute.FOLDER, folders);
+        if (job instanceof AbstractProject) {
+            AbstractProject<?, ?> project = (AbstractProject<?, ?>) job;
+            if (project.getAssignedLabelString() != null) {
+                attributes.put(Attribute.LABEL, new HashSet<String>(Collections.singleton(project.getAssignedLabelString())));
+            }
+            SCM scm = project.getScm();
+            String key = scm == null ? null : scm.getKey();
+            if (key != null) {
+                Set<String> scms = new HashSet<String>();
+                String[] parts = key.split("\\s+");
+                // the first part is the kind of SCM
+                for (int i = 1; i < parts.length; i++) {
+                    scms.add(parts[i]);
+                }
+                attributes.put(Attribute.SCM, scms);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Indexes the attributes of the given job held in memory, replacing its previous ones.
+     */
+    synchronized void index(Job<?, ?> job) {
+        String fullName = job.getFullName();
+        Map<Attribute, Set<String>> previous = copy(fullName);
+        Set<String> results = get(fullName, Attribute.RESULT);
+        Set<String> views = get(fullName, Attribute.VIEW);
+        remove(fullName);
+        if (!loaded) {
+            indexedWhileLoading.add(fullName);
+        }
+        for (Map.Entry<Attribute, Set<String>> attribute : attributesOf(job).entrySet()) {
+            for (String value : attribute.getValue()) {
+                put(fullName, attribute.getKey(), value);
+            }
+        }
+        for (String result : results) {
+            put(fullName, Attribute.RESULT, result);
+        }
+        // saving a job doesn't change the views showing it, creating or moving it does
+        for (String view : views) {
+            put(fullName, Attribute.VIEW, view);
+        }
+        // the views are compared when they are indexed again
+        previous.remove(Attribute.VIEW);
+        Map<Attribute, Set<String>> current = copy(fullName);
+        current.remove(Attribute.VIEW);
+        if (!previous.equals(current)) {
+            changed(fullName);
+        }
+    }
+
+    /**
+     * Records the result of the last build of the job with the given full name.
+     */
+    synchronized void setResult(String fullName, String result) {
+        // while the index is being built, the job may not be indexed yet
+        if (loaded && !jobs.containsKey(fullName)) {
+            return;
+        }
+        Set<String> previous = get(fullName, Attribute.RESULT);
+        if (previous.equals(Collections.singleton(result))) {
+            return;
+        }
+        for (String value : previous) {
+            unput(fullName, Attribute.RESULT, value);
+        }
+        put(fullName, Attribute.RESULT, result);
+        changed(fullName);
+    }
+
+    /**
+     * Removes the job with the given full name and, if it was a folder, everything inside it.
+     */
+    synchronized void removeAll(String fullName) {
+        String prefix = fullName + "/";
+        for (String name : new HashSet<String>(jobs.keySet())) {
+            if (name.equals(fullName) || name.startsWith(prefix)) {
+                remove(name);
+            }
+        }
+        if (!loaded) {
+            removedWhileLoading.add(fullName);
+        }
+        viewsChanged = true;
+    }
+
+    synchronized void viewsChanged() {
+        viewsChanged = true;
+    }
+
+    private void indexViews() {
+        Map<String, Set<String>> previous = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Map<Attribute, Set<String>>> entry : jobs.entrySet()) {
+            Set<String> views = entry.getValue().remove(Attribute.VIEW);
+            if (views != null && !views.isEmpty()) {
+                previous.put(entry.getKey(), views);
+            }
+        }
+        index.get(Attribute.VIEW).clear();
+        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            for (View view : Jenkins.getInstance().getViews()) {
+                for (TopLevelItem item : view.getItems()) {
+                    for (Job<?, ?> job : item.getAllJobs()) {
+                        if (jobs.containsKey(job.getFullName())) {
+                            put(job.getFullName(), Attribute.VIEW, view.getViewName());
+                        }
+                    }
+                }
+            }
+        } finally {
+            SecurityContextHolder.setContext(old);
+        }
+        viewsChanged = false;
+        if (!viewsIndexed) {
+            viewsIndexed = true;
+            return;
+        }
+        for (Map.Entry<String, Map<Attribute, Set<String>>> entry : jobs.entrySet()) {
+            Set<String> views = entry.getValue().get(Attribute.VIEW);
+            Set<String> before = previous.get(entry.getKey());
+            if (!(views == null || views.isEmpty() ? before == null : views.equals(before))) {
+                changed(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Queues the job with the given full name again, unless the index is being built.
+     */
+    private void changed(String fullName) {
+        if (loaded) {
+            StaleJobQueue.Registry.get().offer(fullName);
+        }
+    }
+
+    private Map<Attribute, Set<String>> copy(String fullName) {
+        Map<Attribute, Set<String>> copy = new EnumMap<Attribute, Set<String>>(Attribute.class);
+        Map<Attribute, Set<String>> attributes = jobs.get(fullName);
+        if (attributes != null) {
+            for (Map.Entry<Attribute, Set<String>> entry : attributes.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    copy.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+                }
+            }
+        }
+        return copy;
+    }
+
+    private Set<String> get(String fullName, Attribute attribute) {
+        Map<Attribute, Set<String>> attributes = jobs.get(fullName);
+        Set<String> values = attributes == null ? null : attributes.get(attribute);
+        return values == null ? Collections.<String>emptySet() : new HashSet<String>(values);
+    }
+
+    private void put(String fullName, Attribute attribute, String value) {
+        Map<Attribute, Set<String>> attributes = jobs.get(fullName);
+        if (attributes == null) {
+            attributes = new EnumMap<Attribute, Set<String>>(Attribute.class);
+            jobs.put(fullName, attributes);
+        }
+        Set<String> values = attributes.get(attribute);
+        if (values == null) {
+            values = new HashSet<String>(2);
+            attributes.put(attribute, values);
+        }
+        values.add(value);
+        Set<String> names = index.get(attribute).get(value);
+        if (names == null) {
+            names = new HashSet<String>();
+            index.get(attribute).put(value, names);
+        }
+        names.add(fullName);
+    }
+
+    private void unput(String fullName, Attribute attribute, String value) {
+        Set<String> names = index.get(attribute).get(value);
+        if (names != null) {
+            names.remove(fullName);
+            if (names.isEmpty()) {
+                index.get(attribute).remove(value);
+            }
+        }
+        Map<Attribute, Set<String>> attributes = jobs.get(fullName);
+        if (attributes != null && attributes.get(attribute) != null) {
+            attributes.get(attribute).remove(value);
+        }
+    }
+
+    private void remove(String fullName) {
+        Map<Attribute, Set<String>> attributes = jobs.remove(fullName);
+        if (attributes == null) {
+            return;
+        }
+        for (Map.Entry<Attribute, Set<String>> entry : attributes.entrySet()) {
+            for (String value : entry.getValue()) {
+                Set<String> names = index.get(entry.getKey()).get(value);
+                if (names != null) {
+                    names.remove(fullName);
+                    if (names.isEmpty()) {
+                        index.get(entry.getKey()).remove(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the index up to date with created, moved and deleted items.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            JobAttributeIndex index = get();
+            for (Job<?, ?> job : item.getAllJobs()) {
+                index.index(job);
+            }
+            // a view may show the item, e.g. through a regular expression
+            index.viewsChanged();
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().removeAll(oldFullName);
+            onCreated(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            get().removeAll(item.getFullName());
+        }
+    }
+
+    /**
+     * Indexes saved jobs again, and notices changed views.
+     */
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job) {
+                get().index((Job<?, ?>) o);
+            } else if (o instanceof ViewGroup) {
+                // views are saved along with Jenkins, or the folder holding them
+                get().viewsChanged();
+            }
+        }
+    }
+
+    /**
+     * Records the results of completed builds.
+     */
+    @Extension
+    public static final class RunListenerImpl extends RunListener<Run> {
+
+        public RunListenerImpl() {
+            super(Run.class);
+        }
+
+        @Override
+        public void onCompleted(Run run, TaskListener listener) {
+            Result result = run.getResult();
+            if (result != null) {
+                get().setResult(run.getParent().getFullName(), result.toString());
+            }
+        }
+    }
+}
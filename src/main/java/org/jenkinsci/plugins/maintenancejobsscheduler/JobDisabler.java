@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.BulkChange;
+import hudson.model.Job;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Disables jobs and prepends a description to them, writing each job's config.xml only once.
+ *
+ * Jobs are only recorded in the {@link SweepJournal} and the {@link UndoLog} once saved. A job that
+ * couldn't be saved is enabled again in memory, so that the next sweep sees it as it is on disk.
+ * The description prepended by an earlier sweep is replaced rather than kept, so that descriptions don't grow.
+ *
+ * @author Victor Martinez
+ */
+final class JobDisabler {
+
+    private static final Logger LOGGER = Logger.getLogger(JobDisabler.class.getName());
+
+    private final SweepJournal journal;
+    private final UndoLog undo;
+    private final String defaultDescription;
+
+    /**
+     * @param journal
+     *            the journal of the sweep.
+     * @param undo
+     *            the undo log of the sweep.
+     * @param defaultDescription
+     *            the start of the descriptions prepended by the sweeps.
+     */
+    JobDisabler(SweepJournal journal, UndoLog undo, String defaultDescription) {
+        this.journal = journal;
+        this.undo = undo;
+        this.defaultDescription = defaultDescription;
+    }
+
+    /**
+     * Disables the given job and prepends the given description to its own.
+     *
+     * @throws IOException
+     *             if the job couldn't be saved, in which case it is left as it was.
+     */
+    void disable(Job<?, ?> project, DisableableAdapter adapter, String description) throws IOException {
+        String original = project.getDescription();
+        BulkChange bc = new BulkChange(project);
+        try {
+            adapter.setDisabled(project, true);
+            project.setDescription(description + stripPrefix(original, defaultDescription));
+            StalenessSignal.ConfigChangeSignal.beginMaintenance();
+            try {
+                bc.commit();
+            } finally {
+                StalenessSignal.ConfigChangeSignal.endMaintenance();
+            }
+        } catch (IOException e) {
+            restore(project, adapter, original);
+            throw e;
+        } finally {
+            bc.abort();
+        }
+        undo.record(project.getFullName(), original == null ? "" : original);
+        journal.done(project.getFullName(), SweepDecision.DISABLE.name(), SweepJournal.OK);
+    }
+
+    private static void restore(Job<?, ?> project, DisableableAdapter adapter, String original) {
+        // not saved, what is on disk is still the original
+        BulkChange bc = new BulkChange(project);
+        try {
+            adapter.setDisabled(project, false);
+            project.setDescription(original);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to enable job '" + project.getFullName() + "' again", e);
+        } finally {
+            bc.abort();
+        }
+    }
+
+    /**
+     * Removes the descriptions prepended by earlier sweeps from the start of the given description.
+     */
+    static String stripPrefix(String description, String defaultDescription) {
+        String result = description == null ? "" : description;
+        String prefix = defaultDescription + " '";
+        while (result.startsWith(prefix)) {
+            int end = result.indexOf("'\n", prefix.length());
+            if (end < 0) {
+                break;
+            }
+            result = result.substring(end + 2);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sorted full names of every job, for the form validation to count the excluded jobs without walking the item tree.
+ *
+ * The snapshot is taken on first use, then taken again in the background once it is older than a minute
+ * or items have been created, deleted or moved, while the previous one keeps being served.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class JobNameSnapshot {
+
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(1);
+
+    private volatile String[] names;
+    private volatile long taken;
+    private volatile boolean changed = false;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static JobNameSnapshot get() {
+        return Jenkins.getInstance().getExtensionList(JobNameSnapshot.class).get(0);
+    }
+
+    /**
+     * Gets the sorted full names of every job, possibly slightly out of date.
+     */
+    String[] getNames() {
+        String[] current = names;
+        if (current == null) {
+            return refresh();
+        }
+        if ((changed || System.currentTimeMillis() - taken > MAX_AGE) && refreshing.compareAndSet(false, true)) {
+            Timer.get().submit(new Runnable() {
+                public void run() {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshing.set(false);
+                    }
+                }
+            });
+        }
+        return current;
+    }
+
+    private synchronized String[] refresh() {
+        changed = false;
+        List<String> all = new ArrayList<String>();
+        // every job, whoever asks
+        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            for (Job<?, ?> job : new JobTraversal(Jenkins.getInstance())) {
+                all.add(job.getFullName());
+            }
+        } finally {
+            SecurityContextHolder.setContext(old);
+        }
+        String[] sorted = all.toArray(new String[all.size()]);
+        Arrays.sort(sorted);
+        taken = System.currentTimeMillis();
+        names = sorted;
+        return sorted;
+    }
+
+    /**
+     * Marks the snapshot out of date when items come and go.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            get().changed = true;
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            get().changed = true;
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().changed = true;
+        }
+    }
+}
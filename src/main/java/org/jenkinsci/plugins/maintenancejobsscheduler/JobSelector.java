@@ -0,0 +1,225 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.maintenancejobsscheduler.JobAttributeIndex.Attribute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects jobs by their attributes, one {@code key:value} condition per line, e.g. {@code label:windows}.
+ *
+ * A job is selected when it matches one of the values of every key, and none of the conditions
+ * starting with {@code !}. The keys are those of {@link Attribute}. Conditions are resolved with
+ * set operations on the {@link JobAttributeIndex}, not evaluated job by job.
+ *
+ * @author Victor Martinez
+ */
+public final class JobSelector {
+
+    static final JobSelector NONE = new JobSelector(Collections.<String>emptyList());
+
+    private final List<String> rules;
+    private final Map<Attribute, Set<String>> includes = new EnumMap<Attribute, Set<String>>(Attribute.class);
+    private final Set<Condition> excludes = new LinkedHashSet<Condition>();
+    private final Map<String, String> errors = new LinkedHashMap<String, String>();
+
+    private JobSelector(List<String> rules) {
+        this.rules = Collections.unmodifiableList(rules);
+        for (String rule : rules) {
+            boolean exclude = rule.startsWith("!");
+            String condition = exclude ? rule.substring(1).trim() : rule;
+            int colon = condition.indexOf(':');
+            Attribute attribute = colon < 0 ? null : Attribute.of(condition.substring(0, colon).trim().toLowerCase(Locale.ENGLISH));
+            String value = colon < 0 ? "" : condition.substring(colon + 1).trim();
+            if (colon < 0) {
+                errors.put(rule, "expected key:value");
+            } else if (attribute == null) {
+                errors.put(rule, "unknown key, expected one of " + getKeys());
+            } else if (value.length() == 0) {
+                errors.put(rule, "missing value");
+            } else {
+                if (attribute == Attribute.RESULT) {
+                    value = value.toUpperCase(Locale.ENGLISH);
+                }
+                if (exclude) {
+                    excludes.add(new Condition(attribute, value));
+                } else {
+                    Set<String> values = includes.get(attribute);
+                    if (values == null) {
+                        values = new LinkedHashSet<String>();
+                        includes.put(attribute, values);
+                    }
+                    values.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the given selector.
+     *
+     * @param selector
+     *            one condition per line, may be null.
+     */
+    public static JobSelector of(String selector) {
+        if (StringUtils.isBlank(selector)) {
+            return NONE;
+        }
+        List<String> rules = new ArrayList<String>();
+        for (String line : selector.split("\n")) {
+            String rule = line.trim();
+            if (rule.length() > 0) {
+                rules.add(rule);
+            }
+        }
+        return new JobSelector(rules);
+    }
+
+    private static List<String> getKeys() {
+        List<String> keys = new ArrayList<String>();
+        for (Attribute attribute : Attribute.values()) {
+            keys.add(attribute.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the conditions this selector was parsed from.
+     */
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Gets the invalid conditions along with what is wrong with them.
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Resolves the conditions against the given index.
+     *
+     * An invalid selector selects nothing, so that a typo never widens the set of jobs the maintenance applies to.
+     */
+    Selection resolve(Index index) {
+        if (!isValid()) {
+            return new Selection(rules, Collections.<String>emptySet(), Collections.<String>emptySet());
+        }
+        Set<String> included = null;
+        for (Map.Entry<Attribute, Set<String>> entry : includes.entrySet()) {
+            Set<String> matching = new HashSet<String>();
+            for (String value : entry.getValue()) {
+                matching.addAll(index.getJobs(entry.getKey(), value));
+            }
+            if (included == null) {
+                included = matching;
+            } else if (matching.size() < included.size()) {
+                matching.retainAll(included);
+                included = matching;
+            } else {
+                included.retainAll(matching);
+            }
+            if (included.isEmpty()) {
+                break;
+            }
+        }
+        Set<String> excluded = new HashSet<String>();
+        for (Condition condition : excludes) {
+            excluded.addAll(index.getJobs(condition.attribute, condition.value));
+        }
+        if (included != null) {
+            included.removeAll(excluded);
+            excluded.clear();
+        }
+        return new Selection(rules, included, excluded);
+    }
+
+    /**
+     * Source of the full names of the jobs by attribute value.
+     */
+    interface Index {
+
+        Set<String> getJobs(Attribute attribute, String value);
+    }
+
+    /**
+     * The jobs selected at the time the selector was resolved.
+     */
+    static final class Selection {
+
+        private final List<String> rules;
+        // null selects every job but the excluded ones
+        private final Set<String> included;
+        private final Set<String> excluded;
+
+        private Selection(List<String> rules, Set<String> included, Set<String> excluded) {
+            this.rules = rules;
+            this.included = included;
+            this.excluded = excluded;
+        }
+
+        boolean matches(String fullName) {
+            return included == null ? !excluded.contains(fullName) : included.contains(fullName);
+        }
+
+        /**
+         * Counts the given names matching this selection.
+         */
+        int count(Set<String> fullNames) {
+            int count = 0;
+            for (String fullName : fullNames) {
+                if (matches(fullName)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Gets the conditions, so that the queues of the policies are filled again when they change.
+         * The jobs whose attributes change are queued again by the {@link JobAttributeIndex}.
+         */
+        String getSettings() {
+            return rules.toString();
+        }
+    }
+
+    private static final class Condition {
+
+        private final Attribute attribute;
+        private final String value;
+
+        Condition(Attribute attribute, String value) {
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Condition && ((Condition) o).attribute == attribute && ((Condition) o).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return attribute.hashCode() * 31 + value.hashCode();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size on disk of the jobs, measured once and then kept up to date.
+ *
+ * A completed build adds the size of its own directory, a deleted build makes the job measured again
+ * the next time it's needed. Stale jobs don't build, so their size is rarely measured more than once.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class JobSizeCache {
+
+    private static final Logger LOGGER = Logger.getLogger(JobSizeCache.class.getName());
+
+    private final ConcurrentMap<String, Long> sizes = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static JobSizeCache get() {
+        return Jenkins.getInstance().getExtensionList(JobSizeCache.class).get(0);
+    }
+
+    /**
+     * Gets the size of the directory of the given job, builds and workspace included.
+     *
+     * @return the size in bytes.
+     */
+    public long getSize(Job<?, ?> job) throws IOException {
+        Long size = sizes.get(job.getFullName());
+        if (size == null) {
+            size = sizeOf(job.getRootDir());
+            sizes.put(job.getFullName(), size);
+        }
+        return size;
+    }
+
+    /**
+     * Forgets the size of the job with the given full name and, if it was a folder, those of the jobs inside it.
+     */
+    public void invalidate(String fullName) {
+        sizes.remove(fullName);
+        String prefix = fullName + '/';
+        for (String name : sizes.keySet()) {
+            if (name.startsWith(prefix)) {
+                sizes.remove(name);
+            }
+        }
+    }
+
+    private void add(String fullName, long delta) {
+        while (true) {
+            Long size = sizes.get(fullName);
+            // not measured yet, it will be when needed
+            if (size == null || sizes.replace(fullName, size, size + delta)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the size of the given file or directory, without following symbolic links.
+     */
+    static long sizeOf(File file) throws IOException {
+        if (Util.isSymlink(file)) {
+            return 0;
+        }
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += sizeOf(child);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Adds the completed builds and forgets the jobs whose builds are deleted.
+     */
+    @Extension
+    public static final class RunListenerImpl extends RunListener<Run> {
+
+        public RunListenerImpl() {
+            super(Run.class);
+        }
+
+        @Override
+        public void onFinalized(Run run) {
+            String fullName = run.getParent().getFullName();
+            try {
+                get().add(fullName, sizeOf(run.getRootDir()));
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to measure " + run.getRootDir(), e);
+                get().invalidate(fullName);
+            }
+        }
+
+        @Override
+        public void onDeleted(Run run) {
+            get().invalidate(run.getParent().getFullName());
+        }
+    }
+
+    /**
+     * Forgets deleted and moved items.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            get().invalidate(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().invalidate(oldFullName);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Depth-first walk over all the jobs of an item group, folders included.
+ *
+ * Jobs are yielded lazily, one item group at a time, so the whole tree is never copied into a single list.
+ * Children of jobs, such as matrix configurations, are not visited.
+ *
+ * @author Victor Martinez
+ */
+final class JobTraversal implements Iterable<Job<?, ?>> {
+
+    private final ItemGroup<? extends Item> root;
+
+    JobTraversal(ItemGroup<? extends Item> root) {
+        this.root = root;
+    }
+
+    public Iterator<Job<?, ?>> iterator() {
+        return new Iterator<Job<?, ?>>() {
+            private final Deque<Iterator<? extends Item>> stack = new ArrayDeque<Iterator<? extends Item>>();
+            private Job<?, ?> next;
+
+            {
+                stack.push(root.getItems().iterator());
+            }
+
+            public boolean hasNext() {
+                while (next == null && !stack.isEmpty()) {
+                    Iterator<? extends Item> items = stack.peek();
+                    if (!items.hasNext()) {
+                        stack.pop();
+                        continue;
+                    }
+                    Item item = items.next();
+                    if (item instanceof Job) {
+                        next = (Job<?, ?>) item;
+                    } else if (item instanceof ItemGroup) {
+                        // a wildcard cast is checked, and ItemGroup bounds its items to Item anyway
+                        ItemGroup<?> group = (ItemGroup<?>) item;
+                        stack.push(group.getItems().iterator());
+                    }
+                }
+                return next != null;
+            }
+
+            public Job<?, ?> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Job<?, ?> job = next;
+                next = null;
+                return job;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
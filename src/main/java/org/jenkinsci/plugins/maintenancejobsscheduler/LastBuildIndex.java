@@ -0,0 +1,333 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the start time of the last build of every job, so the maintenance sweep can tell
+ * how long a job has been idle without loading its build records from disk, along with the result
+ * of its last completed build for the {@link JobAttributeIndex}.
+ *
+ * The index is kept up to date by {@link RunListener} hooks. It is written to disk on shutdown
+ * and read back (and removed) on startup; when the file is missing, e.g. after a crash,
+ * it is rebuilt once from the jobs themselves.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class LastBuildIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(LastBuildIndex.class.getName());
+
+    private static final int MAGIC = 0x4d4a4c42;
+    private static final int VERSION = 2;
+    private static final String FILE_NAME = "last-builds.idx";
+
+    private final ConcurrentMap<String, Long> lastBuilds = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<String, String> lastResults = new ConcurrentHashMap<String, String>();
+    private volatile boolean loaded = false;
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static LastBuildIndex get() {
+        LastBuildIndex index = Jenkins.getInstance().getExtensionList(LastBuildIndex.class).get(0);
+        index.ensureLoaded();
+        return index;
+    }
+
+    /**
+     * Gets the directory where this plugin keeps its own data.
+     */
+    static File getPluginRootDir() {
+        return new File(Jenkins.getInstance().getRootDir(), "maintenance-jobs-scheduler");
+    }
+
+    /**
+     * Gets the time of the last build of the given job.
+     *
+     * @return the time in milliseconds, or null if the job doesn't have any builds yet.
+     */
+    public Long getLastBuild(Job<?, ?> job) {
+        return getLastBuild(job.getFullName());
+    }
+
+    /**
+     * Gets the time of the last build of the job with the given full name.
+     *
+     * @return the time in milliseconds, or null if the job doesn't have any builds yet.
+     */
+    public Long getLastBuild(String fullName) {
+        return lastBuilds.get(fullName);
+    }
+
+    /**
+     * Gets the time of the last build of every job that has been built, by full name.
+     */
+    public Map<String, Long> getLastBuilds() {
+        return Collections.unmodifiableMap(lastBuilds);
+    }
+
+    /**
+     * Gets the result of the last completed build of the job with the given full name.
+     *
+     * @return the result, e.g. FAILURE, or null if it isn't known.
+     */
+    public String getLastResult(String fullName) {
+        return lastResults.get(fullName);
+    }
+
+    /**
+     * Records the result of a completed build of the job with the given full name.
+     */
+    public void recordResult(String fullName, String result) {
+        lastResults.put(fullName, result);
+    }
+
+    /**
+     * Records a build of the job with the given full name.
+     */
+    public void record(String fullName, long time) {
+        while (true) {
+            Long previous = lastBuilds.putIfAbsent(fullName, time);
+            if (previous == null || previous >= time || lastBuilds.replace(fullName, previous, time)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets the job with the given full name and, if it was a folder, everything inside it.
+     */
+    public void remove(String fullName) {
+        remove(lastBuilds, fullName);
+        remove(lastResults, fullName);
+    }
+
+    private static void remove(Map<String, ?> map, String fullName) {
+        map.remove(fullName);
+        String prefix = fullName + '/';
+        for (String name : map.keySet()) {
+            if (name.startsWith(prefix)) {
+                map.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Moves the entries of a renamed or moved item, including those of its children.
+     */
+    public void move(String oldFullName, String newFullName) {
+        move(lastBuilds, oldFullName, newFullName);
+        move(lastResults, oldFullName, newFullName);
+    }
+
+    private static <V> void move(Map<String, V> map, String oldFullName, String newFullName) {
+        V value = map.remove(oldFullName);
+        if (value != null) {
+            map.put(newFullName, value);
+        }
+        String prefix = oldFullName + '/';
+        for (Map.Entry<String, V> entry : map.entrySet()) {
+            String name = entry.getKey();
+            if (name.startsWith(prefix)) {
+                map.remove(name);
+                map.put(newFullName + '/' + name.substring(prefix.length()), entry.getValue());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        File file = getFile();
+        boolean found = false;
+        if (file.exists()) {
+            try {
+                read(file);
+                found = true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read " + file + ", rebuilding it", e);
+                lastBuilds.clear();
+                lastResults.clear();
+            }
+            // only a clean shutdown leaves a trustworthy index behind
+            if (!file.delete()) {
+                LOGGER.log(Level.WARNING, "Unable to delete " + file);
+            }
+        }
+        if (!found) {
+            rebuild();
+        }
+        loaded = true;
+    }
+
+    private void rebuild() {
+        LOGGER.log(Level.FINE, "Rebuilding the last build index");
+        for (Job<?, ?> job : Jenkins.getInstance().getAllItems(Job.class)) {
+            Run<?, ?> lastBuild = job.getLastBuild();
+            if (lastBuild != null) {
+                lastBuilds.put(job.getFullName(), lastBuild.getTimeInMillis());
+                // the result of a build still running is recorded once it completes
+                if (lastBuild.getResult() != null) {
+                    lastResults.put(job.getFullName(), lastBuild.getResult().toString());
+                }
+            }
+        }
+    }
+
+    private File getFile() {
+        return new File(getPluginRootDir(), FILE_NAME);
+    }
+
+    private void read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            // version 1 didn't keep the results, it is rebuilt like a missing file
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unexpected format");
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                lastBuilds.put(name, in.readLong());
+                String result = in.readUTF();
+                if (result.length() > 0) {
+                    lastResults.put(name, result);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index to disk.
+     */
+    synchronized void save() throws IOException {
+        if (!loaded) {
+            return;
+        }
+        File file = getFile();
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(lastBuilds.entrySet());
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Long> entry : entries) {
+                String result = lastResults.get(entry.getKey());
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+                out.writeUTF(result == null ? "" : result);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        get();
+    }
+
+    /**
+     * Keeps the index up to date with started and completed builds.
+     */
+    @Extension
+    public static final class RunListenerImpl extends RunListener<Run> {
+
+        public RunListenerImpl() {
+            super(Run.class);
+        }
+
+        @Override
+        public void onStarted(Run run, TaskListener listener) {
+            record(run);
+        }
+
+        @Override
+        public void onCompleted(Run run, TaskListener listener) {
+            record(run);
+            Result result = run.getResult();
+            if (result != null) {
+                get().recordResult(run.getParent().getFullName(), result.toString());
+            }
+        }
+
+        private void record(Run run) {
+            String fullName = run.getParent().getFullName();
+            get().record(fullName, run.getTimeInMillis());
+            StaleJobQueue.Registry.get().offer(fullName);
+        }
+    }
+
+    /**
+     * Follows renamed, moved and deleted items, and persists the index on shutdown.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            get().remove(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().move(oldFullName, newFullName);
+        }
+
+        @Override
+        public void onBeforeShutdown() {
+            try {
+                Jenkins.getInstance().getExtensionList(LastBuildIndex.class).get(0).save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to save the last build index", e);
+            }
+        }
+    }
+}
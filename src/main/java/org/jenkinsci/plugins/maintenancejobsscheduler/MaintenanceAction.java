@@ -0,0 +1,25 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.jenkinsci.plugins.Messages;
+import org.jvnet.localizer.Localizable;
+
+/**
+ * What a maintenance policy does with the stale jobs, or with the old builds of every job.
+ *
+ * @author Victor Martinez
+ */
+public enum MaintenanceAction {
+    DISABLE(Messages._action_disable()),
+    REMOVE(Messages._action_remove()),
+    PRUNE_BUILDS(Messages._action_prune_builds());
+
+    private final Localizable displayName;
+
+    MaintenanceAction(Localizable displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName.toString();
+    }
+}
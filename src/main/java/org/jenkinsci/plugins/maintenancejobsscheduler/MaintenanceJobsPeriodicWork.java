@@ -1,160 +1,122 @@
 package org.jenkinsci.plugins.maintenancejobsscheduler;
 
-import antlr.ANTLRException;
-import hudson.Extension;
-import hudson.model.AbstractProject;
 import hudson.model.AperiodicWork;
 import hudson.model.AsyncAperiodicWork;
 import hudson.model.TaskListener;
-import hudson.scheduler.CronTab;
-import jenkins.model.Jenkins;
-import jenkins.util.Timer;
-import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 /**
+ * Runs the maintenance policies handed over by {@link MaintenanceScheduler} on a thread of its own.
+ *
+ * It is never scheduled on the shared {@link jenkins.util.Timer}.
  *
  * @author Victor Martinez
  */
-@Extension
 public class MaintenanceJobsPeriodicWork extends AsyncAperiodicWork {
 
-    //last scheduled task;
-    private static MaintenanceJobsPeriodicWork currentTask;
+    private volatile List<MaintenancePolicy> due = Collections.emptyList();
+    private final AtomicBoolean running = new AtomicBoolean();
 
     public MaintenanceJobsPeriodicWork() {
         super("MaintenanceJobsPeriodicWork Worker Thread");
     }
 
+    /**
+     * Runs the given policies in the background, unless the previous run is still in progress.
+     *
+     * @return false if the previous run is still in progress, in which case the policies are not run.
+     */
+    boolean run(List<MaintenancePolicy> due) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        this.due = due;
+        doAperiodicRun();
+        return true;
+    }
+
     @Override
     protected void execute(TaskListener taskListener) throws IOException, InterruptedException {
-        GlobalPluginConfiguration conf = GlobalPluginConfiguration.get();
-        execute(conf.isEnable(), Integer.parseInt(conf.getFilter()), conf.getDescription(), conf.getExcludedJobs(), conf.isRemoveJobs());
+        try {
+            GlobalPluginConfiguration conf = GlobalPluginConfiguration.get();
+            List<MaintenancePolicy> due = this.due;
+            if (!conf.isEnable()) {
+                logger.log(Level.FINER, this.name + " is disabled.");
+            } else if (conf.isDryRun()) {
+                for (MaintenancePolicy policy : due) {
+                    taskListener.getLogger().println("Policy '" + policy.getName() + "'");
+                    preview(policy.toCriteria(), taskListener);
+                }
+            } else if (!due.isEmpty() || SweepJournal.getFile().exists()) {
+                // an unfinished sweep is resumed even when no policy is due
+                execute(due, conf.getDescription());
+            }
+        } finally {
+            running.set(false);
+        }
     }
 
     public void execute(boolean enable, int filter, String defaultDescription, String excludedJobs, boolean removeJobs) throws IOException, InterruptedException {
         if (enable) {
-            Date today = new Date();
-
-            List<String> listJobs = null;
-            if(StringUtils.isNotBlank(excludedJobs)) {
-                listJobs = Arrays.asList(excludedJobs.split("\n"));
-            }
-
-            for (Object item : Jenkins.getInstance().getItems()) {
-                if (item instanceof AbstractProject) {
-                    AbstractProject project = (AbstractProject) item;
-                    long purgeTime = System.currentTimeMillis() - (filter * 24 * 60 * 60 * 1000);
-                    if (project.getLastBuild() == null) {
-                        logger.log(Level.FINER, "Excluded that job '" + project.getName() + "' since it doesn't have any builds yet");
-                    } else if (project.isDisabled()) {
-                        logger.log(Level.FINER, "Excluded that job '" + project.getName() + "' since it doesn't have any builds yet");
-                    } else if (project.getLastBuild().getTimeInMillis() < purgeTime) {
-                        boolean found = true;
-                        if (listJobs != null) {
-                            for (String excluded : listJobs) {
-                                try {
-                                    Pattern search = Pattern.compile(excluded);
-                                    if (search.matcher(project.getName()).matches()) {
-                                        found = false;
-                                    }
-                                } catch(PatternSyntaxException pse) {
-                                    logger.log(Level.WARNING, "It does nothing since Invalid regular expression [" + excluded +
-                                                "] exception: " + pse.getDescription());
-                                    found = false;
-                                }
-                            }
-                        }
-                        if (found) {
-                            if (removeJobs) {
-                                logger.log(Level.FINER, "Removing job '" + project.getName() + "'");
-                                project.delete();
-                            } else {
-                                logger.log(Level.FINER, "Disabling job '" + project.getName() + "'");
-                                project.disable();
-                                String description = defaultDescription + " '" + today.toString() + "'\n";
-                                //TODO: add dependency with https://wiki.jenkins-ci.org/display/JENKINS/OWASP+Markup+Formatter+Plugin
-                                // in order to add description in html format
-                                // if (Jenkins.getInstance().getMarkupFormatter() instanceof hudson.markup.RawHtmlMarkupFormatter)
-                                project.setDescription(description + project.getDescription());
-                            }
-                        } else {
-                            logger.log(Level.FINER, "Excluded that job '" + project.getName() + "' since it matches the excluded regex!");
-                        }
-                    } else {
-                        logger.log(Level.FINER, "Excluded that job '" + project.getName() + "' for some other reason");
-                    }
-                }
-            }
+            execute(Collections.singletonList(new MaintenancePolicy(MaintenancePolicy.DEFAULT_NAME, null, filter, null, excludedJobs,
+                    removeJobs ? MaintenanceAction.REMOVE : MaintenanceAction.DISABLE)), defaultDescription);
         } else {
             logger.log(Level.FINER, this.name + " is disabled.");
         }
     }
 
-    @Override
-    public AperiodicWork getNewInstance() {
-        if(currentTask!=null){
-            currentTask.cancel();
-        }
-        else{
-            cancel();
-        }
-        currentTask = new MaintenanceJobsPeriodicWork();
-        return currentTask;
+    /**
+     * Runs the given policies now, whatever their schedule, in a single sweep.
+     */
+    public void execute(List<MaintenancePolicy> policies, String defaultDescription) throws IOException, InterruptedException {
+        execute(policies, defaultDescription, System.currentTimeMillis());
     }
 
-    public String getThreadName(){
-        return name +" thread";
+    /**
+     * Runs the given policies in a single sweep as if it was the given time, which the age of the jobs is measured from.
+     */
+    public void execute(List<MaintenancePolicy> policies, String defaultDescription, long now) throws IOException, InterruptedException {
+        new MaintenanceSweep(name, policies, defaultDescription, GlobalPluginConfiguration.get(), now).run();
     }
 
-    public MaintenanceJobsPeriodicWork getLastTask(){
-        return currentTask;
+    /**
+     * Dry run: writes what {@link #execute(boolean, int, String, String, boolean)} would do with every job
+     * to the given listener, as CSV, without changing anything.
+     */
+    public void preview(boolean enable, int filter, String excludedJobs, boolean removeJobs, TaskListener taskListener) throws IOException {
+        if (enable) {
+            preview(new SweepCriteria(filter, excludedJobs, removeJobs), taskListener);
+        } else {
+            logger.log(Level.FINER, this.name + " is disabled.");
+        }
     }
 
-    @Override
-    public long getInitialDelay(){
-        return getRecurrencePeriod();
+    private void preview(SweepCriteria criteria, TaskListener taskListener) throws IOException {
+        Writer out = new OutputStreamWriter(taskListener.getLogger(), "UTF-8");
+        new SweepPreview(criteria).write(out, SweepPreview.Format.CSV, 0, Integer.MAX_VALUE, Long.MAX_VALUE);
     }
 
+    /**
+     * Returns this very instance, {@link MaintenanceScheduler} decides when it runs again.
+     */
     @Override
-    public boolean cancel(){
-        ScheduledThreadPoolExecutor ex = (ScheduledThreadPoolExecutor) Timer.get();
-        ex.purge();
-        return super.cancel();
+    public AperiodicWork getNewInstance() {
+        return this;
     }
 
-    public CronTab getCronTab() throws ANTLRException, NullPointerException {
-        GlobalPluginConfiguration conf = GlobalPluginConfiguration.get();
-        String cron = conf.getDisabledSpec();
-        CronTab tab = new CronTab(cron);
-        return tab;
+    public String getThreadName(){
+        return name +" thread";
     }
 
     @Override
     public long getRecurrencePeriod() {
-        try {
-            CronTab tab = getCronTab();
-            GregorianCalendar now = new GregorianCalendar();
-            Calendar nextExecution = tab.ceil(now.getTimeInMillis());
-            long period = nextExecution.getTimeInMillis() - now.getTimeInMillis();
-            if(nextExecution.getTimeInMillis() - now.getTimeInMillis()<=60000)
-                period = period + 60000l; //add one minute to not schedule it during one minute one than once
-            logger.log(Level.FINER, "Waiting ... " + period + " ms");
-            return period;
-        } catch (Exception ex) {
-            logger.log(Level.SEVERE, null, ex);
-            //it should not happen
-            return 1000*60*6;
-        }
+        return Math.max(0, MaintenanceScheduler.get().getNextRun() - System.currentTimeMillis());
     }
-}
\ No newline at end of file
+}
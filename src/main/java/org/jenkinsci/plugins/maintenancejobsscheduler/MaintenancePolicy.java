@@ -0,0 +1,275 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import antlr.ANTLRException;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.scheduler.CronTab;
+import hudson.util.FormValidation;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.Messages;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A named set of maintenance settings with its own schedule: which jobs, after how many days
+ * without builds, and what is done with them. Policies deleting old builds look at every built job
+ * instead, their number of days applying to the builds.
+ *
+ * @author Victor Martinez
+ */
+public final class MaintenancePolicy extends AbstractDescribableImpl<MaintenancePolicy> {
+
+    private static final Logger LOGGER = Logger.getLogger(MaintenancePolicy.class.getName());
+
+    /**
+     * Name of the policy made of the settings at the top of the global configuration.
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final String name;
+    private final String spec;
+    private final int filter;
+    private final String includedJobs;
+    private final String excludedJobs;
+    private final MaintenanceAction action;
+    private int spaceTarget = 0;
+    private int keepBuilds = 0;
+    private String selector;
+    private transient volatile List<CronTab> tabs;
+    private transient volatile ExclusionMatcher inclusions;
+    private transient volatile ExclusionMatcher exclusions;
+
+    /**
+     * @param name
+     *            unique name of the policy.
+     * @param spec
+     *            the crontab specification.
+     * @param filter
+     *            number of days without builds after which a job is stale.
+     * @param includedJobs
+     *            one regular expression per line, blank to select every job.
+     * @param excludedJobs
+     *            one regular expression per line.
+     * @param action
+     *            what is done with the stale jobs.
+     */
+    @DataBoundConstructor
+    public MaintenancePolicy(String name, String spec, int filter, String includedJobs, String excludedJobs, MaintenanceAction action) {
+        this.name = StringUtils.trim(name);
+        this.spec = spec;
+        this.filter = filter;
+        this.includedJobs = includedJobs;
+        this.excludedJobs = excludedJobs;
+        this.action = action == null ? MaintenanceAction.DISABLE : action;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public int getFilter() {
+        return filter;
+    }
+
+    public String getIncludedJobs() {
+        return includedJobs;
+    }
+
+    public String getExcludedJobs() {
+        return excludedJobs;
+    }
+
+    /**
+     * Gets the compiled form of {@link #getIncludedJobs()}, null if every job is selected.
+     */
+    ExclusionMatcher getIncludedJobsMatcher() {
+        ExclusionMatcher result = inclusions;
+        if (result == null && StringUtils.isNotBlank(includedJobs)) {
+            result = ExclusionMatcher.of(includedJobs);
+            inclusions = result;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the compiled form of {@link #getExcludedJobs()}.
+     */
+    ExclusionMatcher getExcludedJobsMatcher() {
+        ExclusionMatcher result = exclusions;
+        if (result == null) {
+            result = ExclusionMatcher.of(excludedJobs);
+            exclusions = result;
+        }
+        return result;
+    }
+
+    /**
+     * Reuses the given compiled form of {@link #getExcludedJobs()}.
+     */
+    void setExcludedJobsMatcher(ExclusionMatcher exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    public MaintenanceAction getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the number of megabytes to reclaim per run, the largest stale jobs being picked first.
+     * 0 means every stale job is picked, oldest first.
+     */
+    public int getSpaceTarget() {
+        return spaceTarget;
+    }
+
+    @DataBoundSetter
+    public void setSpaceTarget(int spaceTarget) {
+        this.spaceTarget = spaceTarget;
+    }
+
+    /**
+     * Gets the number of most recent builds kept by a policy deleting old builds whatever their age,
+     * 0 to delete every build older than the number of days.
+     */
+    public int getKeepBuilds() {
+        return keepBuilds;
+    }
+
+    @DataBoundSetter
+    public void setKeepBuilds(int keepBuilds) {
+        this.keepBuilds = keepBuilds;
+    }
+
+    /**
+     * Gets the conditions on the attributes of the jobs, see {@link JobSelector}, blank to select every job.
+     */
+    public String getSelector() {
+        return selector;
+    }
+
+    @DataBoundSetter
+    public void setSelector(String selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Creates the criteria of a sweep of this policy, the purge time being computed from now
+     * and the selector resolved against the current attributes of the jobs.
+     */
+    SweepCriteria toCriteria() {
+        return toCriteria(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates the criteria of a sweep of this policy started at the given time.
+     */
+    SweepCriteria toCriteria(long now) {
+        SweepCriteria criteria = new SweepCriteria(filter, getIncludedJobsMatcher(), getExcludedJobsMatcher(), action, now);
+        JobSelector jobSelector = JobSelector.of(selector);
+        if (!jobSelector.isEmpty()) {
+            criteria.setSelection(jobSelector.resolve(JobAttributeIndex.get()));
+        }
+        return criteria;
+    }
+
+    /**
+     * Gets the first time this policy is due after the given time.
+     *
+     * Schedules have a one minute resolution, so the result is the start of a minute later than the given time.
+     *
+     * @return the time in milliseconds, {@link Long#MAX_VALUE} if the policy is never due.
+     */
+    long nextRun(long time) {
+        // CronTab.ceil() matches the minute the given time falls in
+        long nextMinute = time - time % MINUTE + MINUTE;
+        long next = Long.MAX_VALUE;
+        for (CronTab tab : getTabs()) {
+            next = Math.min(next, tab.ceil(nextMinute).getTimeInMillis());
+        }
+        return next;
+    }
+
+    private List<CronTab> getTabs() {
+        List<CronTab> result = tabs;
+        if (result == null) {
+            result = new ArrayList<CronTab>();
+            for (String line : StringUtils.defaultString(spec).split("\n")) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    result.add(new CronTab(line));
+                } catch (ANTLRException e) {
+                    LOGGER.log(Level.WARNING, "Invalid schedule [" + line + "] of policy '" + name + "'", e);
+                    result = Collections.emptyList();
+                    break;
+                }
+            }
+            tabs = result;
+        }
+        return result;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<MaintenancePolicy> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.policy_display_name();
+        }
+
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error(Messages.policy_name_mandatory());
+            }
+            if (DEFAULT_NAME.equals(value.trim())) {
+                return FormValidation.error(Messages.policy_name_reserved(DEFAULT_NAME));
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckSpec(@QueryParameter String value) {
+            return GlobalPluginConfiguration.get().doCheckDisabledSpec(value);
+        }
+
+        public FormValidation doCheckFilter(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckKeepBuilds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckSpaceTarget(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckIncludedJobs(@QueryParameter String value) {
+            return GlobalPluginConfiguration.get().doCheckExcludedJobs(value);
+        }
+
+        public FormValidation doCheckExcludedJobs(@QueryParameter String value) {
+            return GlobalPluginConfiguration.get().doCheckExcludedJobs(value);
+        }
+
+        public FormValidation doCheckSelector(@QueryParameter String value) {
+            return GlobalPluginConfiguration.get().doCheckSelector(value);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Triggers {@link MaintenanceJobsPeriodicWork} when maintenance policies are due.
+ *
+ * The policies, along with their parsed schedules, are only read again when the configuration is saved.
+ * Timing is done on a thread of its own, so the shared {@link jenkins.util.Timer} is left alone.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class MaintenanceScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(MaintenanceScheduler.class.getName());
+    // how often the policies waiting for the previous run check whether it has ended
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private final MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> next;
+    private long nextRun = Long.MAX_VALUE;
+    private List<MaintenancePolicy> policies = Collections.emptyList();
+    // the policies due before this time have already been run
+    private long lastTick = System.currentTimeMillis();
+    // set while the due policies wait for the previous run to end
+    private boolean waiting;
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static MaintenanceScheduler get() {
+        return Jenkins.getInstance().getExtensionList(MaintenanceScheduler.class).get(0);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        MaintenanceScheduler scheduler = get();
+        scheduler.rearm();
+        if (SweepJournal.getFile().exists()) {
+            // finishes the sweep interrupted by the restart
+            scheduler.work.run(Collections.<MaintenancePolicy>emptyList());
+        }
+    }
+
+    /**
+     * Reads the policies from the configuration again and schedules the next run accordingly.
+     */
+    public synchronized void rearm() {
+        policies = GlobalPluginConfiguration.get().getEffectivePolicies();
+        if (!waiting) {
+            lastTick = System.currentTimeMillis();
+        }
+        arm();
+    }
+
+    /**
+     * Gets the time of the next run, {@link Long#MAX_VALUE} if there is none.
+     */
+    public synchronized long getNextRun() {
+        return nextRun;
+    }
+
+    private void arm() {
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        nextRun = Long.MAX_VALUE;
+        for (MaintenancePolicy policy : policies) {
+            nextRun = Math.min(nextRun, policy.nextRun(lastTick));
+        }
+        if (nextRun == Long.MAX_VALUE) {
+            LOGGER.log(Level.FINER, "No maintenance policy to schedule");
+            return;
+        }
+        long delay = Math.max(waiting ? RETRY_DELAY : 0, nextRun - System.currentTimeMillis());
+        LOGGER.log(Level.FINER, "Waiting ... " + delay + " ms");
+        next = getTimer().schedule(new Runnable() {
+            public void run() {
+                tick();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<MaintenancePolicy> due = new ArrayList<MaintenancePolicy>();
+            for (MaintenancePolicy policy : policies) {
+                if (policy.nextRun(lastTick) <= now) {
+                    due.add(policy);
+                }
+            }
+            // woken up a bit early, the same run is armed again
+            if (due.isEmpty()) {
+                waiting = false;
+            } else if (work.run(due)) {
+                lastTick = now;
+                waiting = false;
+            } else {
+                // lastTick is kept, so that they are run once the previous run has ended
+                if (!waiting) {
+                    LOGGER.log(Level.WARNING, "The previous maintenance is still in progress, " + names(due)
+                            + " will be run once it has ended");
+                }
+                waiting = true;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unable to start the maintenance", e);
+        } finally {
+            arm();
+        }
+    }
+
+    private static String names(List<MaintenancePolicy> policies) {
+        List<String> names = new ArrayList<String>();
+        for (MaintenancePolicy policy : policies) {
+            names.add(policy.getName());
+        }
+        return "policies " + names;
+    }
+
+    private ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "MaintenanceJobsScheduler timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timer;
+    }
+
+    private synchronized void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+            next = null;
+        }
+    }
+
+    /**
+     * Stops the timer on shutdown.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onBeforeShutdown() {
+            get().shutdown();
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single run of the maintenance policies that are due, over the jobs, folders included.
+ *
+ * Only the jobs taken out of the {@link StaleJobQueue} of some policy are looked at. Each of them
+ * is loaded and evaluated once against every policy that picked it, the first policy taking
+ * an action on it wins. The jobs an unfinished sweep didn't get to, according to its
+ * {@link SweepJournal}, are looked at again, which is how a sweep stopped by the end of its maintenance window
+ * resumes. The actions are paced by the {@link SweepPacer}.
+ *
+ * @author Victor Martinez
+ */
+final class MaintenanceSweep {
+
+    private static final Logger LOGGER = Logger.getLogger(MaintenanceSweep.class.getName());
+
+    private final String name;
+    private final Map<String, Lane> lanes = new LinkedHashMap<String, Lane>();
+    private final String defaultDescription;
+    // the time the age of the jobs is measured from
+    private final long now;
+    private final Date today;
+    private final LastBuildIndex index = LastBuildIndex.get();
+    private final SweepExecutor executor;
+    private final GlobalPluginConfiguration conf;
+    private final SweepMetrics metrics = SweepMetrics.get();
+    private final StalenessScorer scorer = new StalenessScorer();
+    private final SweepPacer pacer;
+    // whether some jobs were left over at the end of the maintenance window
+    private volatile boolean windowClosed = false;
+    private SweepJournal journal;
+    private JobDisabler disabler;
+    // null unless the jobs are evaluated concurrently
+    private SweepEvaluator evaluator;
+    // null if reports are disabled or couldn't be started
+    private SweepReport report;
+
+    /**
+     * @param now
+     *            the time the age of the jobs is measured from, read once for the whole sweep.
+     */
+    MaintenanceSweep(String name, List<MaintenancePolicy> policies, String defaultDescription, GlobalPluginConfiguration conf, long now) {
+        this.name = name;
+        this.conf = conf;
+        this.now = now;
+        this.today = new Date(now);
+        for (MaintenancePolicy policy : policies) {
+            addLane(policy);
+        }
+        this.defaultDescription = defaultDescription;
+        this.executor = new SweepExecutor(name, conf.getWorkerThreads(), conf.getActionsPerSecond());
+        this.pacer = SweepPacer.of(conf, System.currentTimeMillis());
+        pacer.setMetrics(metrics);
+        executor.setPacer(pacer);
+    }
+
+    private Lane addLane(MaintenancePolicy policy) {
+        SweepCriteria criteria = policy.toCriteria(now);
+        criteria.setMetrics(metrics);
+        criteria.setScorer(scorer);
+        boolean prune = policy.getAction() == MaintenanceAction.PRUNE_BUILDS;
+        Lane lane = new Lane(policy.getName(), criteria, StaleJobQueue.Registry.get().getQueue(policy.getName()),
+                prune ? 0 : policy.getSpaceTarget() * 1024L * 1024L,
+                prune ? new BuildPruner(criteria.getPurgeTime(), policy.getKeepBuilds()) : null);
+        lanes.put(policy.getName(), lane);
+        return lane;
+    }
+
+    void run() throws IOException, InterruptedException {
+        long started = metrics.sweepStarted();
+        boolean success = false;
+        try {
+            sweep();
+            success = getFailures() == 0;
+        } finally {
+            metrics.sweepFinished(started, success);
+        }
+    }
+
+    private void sweep() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        // the policies that picked each job, oldest jobs of the first policy first
+        Map<String, List<Lane>> picked = new LinkedHashMap<String, List<Lane>>();
+        for (Lane lane : new ArrayList<Lane>(lanes.values())) {
+            logErrors(lane, lane.criteria.getInclusions());
+            logErrors(lane, lane.criteria.getExclusions());
+            lane.queue.prepare(lane.criteria.getSettings());
+            // the queue holds every built job, the oldest first
+            for (String fullName : lane.queue.poll(lane.pruner != null ? Long.MAX_VALUE : lane.criteria.getPurgeTime())) {
+                pick(picked, fullName, lane);
+            }
+        }
+        resume(picked);
+        metrics.record(SweepMetrics.Phase.TRAVERSAL, start);
+        start = System.nanoTime();
+        rankBySize(picked);
+        metrics.record(SweepMetrics.Phase.SIZING, start);
+        List<Map.Entry<String, List<Lane>>> stale = new ArrayList<Map.Entry<String, List<Lane>>>(picked.entrySet());
+        String runId = String.valueOf(System.currentTimeMillis());
+        UndoLog undo = null;
+        try {
+            undo = UndoLog.start(runId);
+            journal = SweepJournal.start(name + "@" + runId, toPlan(picked));
+        } catch (IOException e) {
+            if (undo != null) {
+                undo.close();
+            }
+            for (Map.Entry<String, List<Lane>> entry : stale) {
+                requeue(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+        disabler = new JobDisabler(journal, undo, defaultDescription);
+        if (conf.getRetainedReports() > 0) {
+            try {
+                report = SweepReport.start(SweepReport.getDir(), runId, conf.getRetainedReports());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to start the report of " + name, e);
+            }
+        }
+        List<Map.Entry<String, List<Lane>>> pending = stale;
+        Map<String, Evaluation> evaluations = null;
+        int submitted = 0;
+        boolean finished = false;
+        try {
+            if (conf.getEvaluationThreads() > 0) {
+                evaluations = evaluateAll(stale);
+                // the failed and deleted jobs are left out
+                pending = new ArrayList<Map.Entry<String, List<Lane>>>(evaluations.size());
+                for (Map.Entry<String, List<Lane>> entry : stale) {
+                    if (evaluations.containsKey(entry.getKey())) {
+                        pending.add(entry);
+                    }
+                }
+            }
+            for (; submitted < pending.size(); submitted++) {
+                if (pacer.isWindowClosed()) {
+                    LOGGER.log(Level.INFO, name + " reached the end of its maintenance window, " + (pending.size() - submitted)
+                            + " jobs are left to the next run");
+                    break;
+                }
+                String fullName = pending.get(submitted).getKey();
+                final List<Lane> jobLanes = pending.get(submitted).getValue();
+                if (evaluations != null) {
+                    final Evaluation evaluation = evaluations.get(fullName);
+                    executor.submit(fullName, new SweepExecutor.Task() {
+                        public void run() throws IOException, InterruptedException {
+                            process(evaluation.job, jobLanes, evaluation);
+                        }
+                    });
+                    continue;
+                }
+                final Job<?, ?> job = Jenkins.getInstance().getItemByFullName(fullName, Job.class);
+                if (job == null) {
+                    continue;
+                }
+                executor.submit(fullName, new SweepExecutor.Task() {
+                    public void run() throws IOException, InterruptedException {
+                        process(job, jobLanes, null);
+                    }
+                });
+            }
+        } finally {
+            // jobs left over by an interrupted sweep wait for the next one
+            for (Map.Entry<String, List<Lane>> entry : pending.subList(submitted, pending.size())) {
+                requeue(entry.getKey(), entry.getValue());
+            }
+            try {
+                executor.await();
+                finished = submitted == pending.size() && !windowClosed;
+            } finally {
+                closeReport();
+                undo.close();
+                if (finished) {
+                    journal.finish();
+                    publish();
+                } else {
+                    journal.close();
+                }
+            }
+        }
+        if (getFailures() > 0) {
+            LOGGER.log(Level.WARNING, getFailures() + " jobs couldn't be processed by " + name);
+        }
+    }
+
+    /**
+     * Evaluates the given jobs concurrently, see {@link SweepEvaluator}. The actions are then taken by the
+     * worker threads, at the configured rate.
+     *
+     * @return the evaluation of each job that still exists, by full name.
+     */
+    private Map<String, Evaluation> evaluateAll(List<Map.Entry<String, List<Lane>>> stale) throws InterruptedException {
+        List<String> names = new ArrayList<String>(stale.size());
+        List<SweepEvaluator.Task<Evaluation>> tasks = new ArrayList<SweepEvaluator.Task<Evaluation>>(stale.size());
+        for (Map.Entry<String, List<Lane>> entry : stale) {
+            final String fullName = entry.getKey();
+            final List<Lane> jobLanes = entry.getValue();
+            names.add(fullName);
+            tasks.add(new SweepEvaluator.Task<Evaluation>() {
+                public Evaluation call() throws IOException, InterruptedException {
+                    Job<?, ?> job = Jenkins.getInstance().getItemByFullName(fullName, Job.class);
+                    if (job == null) {
+                        return null;
+                    }
+                    boolean done = false;
+                    try {
+                        Evaluation evaluation = evaluate(job, fullName, jobLanes);
+                        done = true;
+                        return evaluation;
+                    } finally {
+                        if (!done) {
+                            failed(fullName, jobLanes);
+                        }
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        evaluator = new SweepEvaluator(name, conf.getEvaluationThreads());
+        Map<String, Evaluation> evaluations = new HashMap<String, Evaluation>();
+        try {
+            for (Evaluation evaluation : evaluator.evaluate(names, tasks)) {
+                evaluations.put(evaluation.jobName, evaluation);
+            }
+            return evaluations;
+        } finally {
+            LOGGER.log(Level.FINER, name + " evaluated " + stale.size() + " jobs on " + (evaluator.isVirtual() ? "virtual" : "platform")
+                    + " threads in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    private void closeReport() {
+        if (report == null) {
+            return;
+        }
+        try {
+            report.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the report of " + name, e);
+        }
+    }
+
+    /**
+     * Adds a row to the report of this run, if any.
+     */
+    private void report(String jobName, Long lastBuild, SweepDecision decision, String policy, long duration) {
+        if (report == null) {
+            return;
+        }
+        try {
+            report.add(jobName, lastBuild, decision, policy, duration);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to report on job '" + jobName + "'", e);
+        }
+    }
+
+    private int getFailures() {
+        return executor.getFailures() + (evaluator == null ? 0 : evaluator.getFailures());
+    }
+
+    private void publish() {
+        try {
+            SharedStorageCoordinator.get().publish(SweepJournal.getPreviousFile());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to publish the summary of " + name, e);
+        }
+    }
+
+    private static void pick(Map<String, List<Lane>> picked, String fullName, Lane lane) {
+        List<Lane> jobLanes = picked.get(fullName);
+        if (jobLanes == null) {
+            jobLanes = new ArrayList<Lane>(1);
+            picked.put(fullName, jobLanes);
+        }
+        if (!jobLanes.contains(lane)) {
+            jobLanes.add(lane);
+        }
+    }
+
+    /**
+     * Adds the jobs an unfinished sweep didn't get to, along with the policies that picked them.
+     */
+    private void resume(Map<String, List<Lane>> picked) {
+        Map<String, List<String>> unfinished;
+        try {
+            unfinished = SweepJournal.readUnfinished();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the journal of the previous sweep", e);
+            return;
+        }
+        for (Map.Entry<String, List<String>> entry : unfinished.entrySet()) {
+            for (String policyName : entry.getValue()) {
+                Lane lane = lanes.get(policyName);
+                if (lane == null) {
+                    MaintenancePolicy policy = conf.getPolicy(policyName);
+                    if (policy == null) {
+                        continue;
+                    }
+                    lane = addLane(policy);
+                }
+                pick(picked, entry.getKey(), lane);
+            }
+        }
+    }
+
+    /**
+     * Keeps, for the policies with a space target, only the largest stale jobs needed to reach it,
+     * the others being given back to the queue. The largest jobs are then processed first.
+     */
+    private void rankBySize(Map<String, List<Lane>> picked) {
+        final Map<String, Long> ranked = new HashMap<String, Long>();
+        for (Lane lane : lanes.values()) {
+            if (lane.spaceTarget <= 0) {
+                continue;
+            }
+            final Map<String, Long> sizes = new HashMap<String, Long>();
+            for (Map.Entry<String, List<Lane>> entry : picked.entrySet()) {
+                if (!entry.getValue().contains(lane)) {
+                    continue;
+                }
+                String fullName = entry.getKey();
+                Job<?, ?> job = Jenkins.getInstance().getItemByFullName(fullName, Job.class);
+                if (job == null) {
+                    continue;
+                }
+                // the jobs left alone by this policy are looked at anyway
+                if (!lane.criteria.evaluate(job, index.getLastBuild(fullName), DisableableAdapter.of(job)).isAction()) {
+                    continue;
+                }
+                try {
+                    sizes.put(fullName, JobSizeCache.get().getSize(job));
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Unable to measure job '" + fullName + "'", e);
+                }
+            }
+            List<String> candidates = new ArrayList<String>(sizes.keySet());
+            Collections.sort(candidates, new Comparator<String>() {
+                public int compare(String a, String b) {
+                    return sizes.get(b).compareTo(sizes.get(a));
+                }
+            });
+            long total = 0;
+            for (String fullName : candidates) {
+                long size = sizes.get(fullName);
+                if (total >= lane.spaceTarget) {
+                    picked.get(fullName).remove(lane);
+                    lane.queue.offer(fullName);
+                    continue;
+                }
+                total += size;
+                Long previous = ranked.get(fullName);
+                if (previous == null || previous < size) {
+                    ranked.put(fullName, size);
+                }
+            }
+            LOGGER.log(Level.FINER, "Policy '" + lane.policy + "' picked " + total + " bytes out of " + candidates.size() + " stale jobs");
+        }
+        if (ranked.isEmpty()) {
+            return;
+        }
+        Map<String, List<Lane>> unranked = new LinkedHashMap<String, List<Lane>>(picked);
+        List<String> names = new ArrayList<String>(unranked.keySet());
+        // stable, so the other jobs keep their order
+        Collections.sort(names, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return sizeOf(b).compareTo(sizeOf(a));
+            }
+
+            private Long sizeOf(String fullName) {
+                Long size = ranked.get(fullName);
+                return size == null ? -1L : size;
+            }
+        });
+        picked.clear();
+        for (String fullName : names) {
+            List<Lane> jobLanes = unranked.get(fullName);
+            if (!jobLanes.isEmpty()) {
+                picked.put(fullName, jobLanes);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> toPlan(Map<String, List<Lane>> picked) {
+        Map<String, List<String>> plan = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<Lane>> entry : picked.entrySet()) {
+            List<String> policies = new ArrayList<String>(entry.getValue().size());
+            for (Lane lane : entry.getValue()) {
+                policies.add(lane.policy);
+            }
+            plan.put(entry.getKey(), policies);
+        }
+        return plan;
+    }
+
+    private void logErrors(Lane lane, ExclusionMatcher matcher) {
+        if (matcher == null) {
+            return;
+        }
+        for (Map.Entry<String, String> error : matcher.getErrors().entrySet()) {
+            LOGGER.log(Level.WARNING, "Policy '" + lane.policy + "' does nothing since Invalid regular expression [" +
+                        error.getKey() + "] exception: " + error.getValue());
+        }
+    }
+
+    private static void requeue(String fullName, List<Lane> jobLanes) {
+        for (Lane lane : jobLanes) {
+            lane.queue.offer(fullName);
+        }
+    }
+
+    /**
+     * Acts on the given job, evaluating it first unless it already has been.
+     */
+    private void process(Job<?, ?> job, List<Lane> jobLanes, Evaluation evaluation) throws IOException, InterruptedException {
+        boolean done = false;
+        try {
+            Evaluation evaluated = evaluation != null ? evaluation : evaluate(job, job.getFullName(), jobLanes);
+            long start = System.nanoTime();
+            evaluated = act(evaluated);
+            report(evaluated.jobName, evaluated.lastBuild, evaluated.decision, evaluated.policy, System.nanoTime() - start);
+            done = true;
+        } catch (SweepPacer.WindowClosedException e) {
+            // not a failure, the journal keeps the job for the next run
+            windowClosed = true;
+            requeue(job.getFullName(), jobLanes);
+            done = true;
+        } finally {
+            if (!done) {
+                failed(job.getFullName(), jobLanes);
+            }
+        }
+    }
+
+    private void failed(String jobName, List<Lane> jobLanes) throws IOException {
+        metrics.count(SweepMetrics.Counter.FAILED);
+        // retried by the next sweep
+        requeue(jobName, jobLanes);
+        journal.done(jobName, "-", SweepJournal.FAILED);
+        report(jobName, index.getLastBuild(jobName), null, null, 0);
+    }
+
+    /**
+     * Decides what to do with the given job, the first policy taking an action on it winning.
+     */
+    private Evaluation evaluate(Job<?, ?> job, String jobName, List<Lane> jobLanes) {
+        metrics.count(SweepMetrics.Counter.SCANNED);
+        return decide(job, jobName, jobLanes);
+    }
+
+    private Evaluation decide(Job<?, ?> job, String jobName, List<Lane> jobLanes) {
+        long start = System.nanoTime();
+        Evaluation evaluation = new Evaluation(job, jobName, jobLanes);
+        evaluation.adapter = DisableableAdapter.of(job);
+        evaluation.lastBuild = index.getLastBuild(jobName);
+        evaluation.disabled = isDisabled(evaluation);
+        for (Lane lane : jobLanes) {
+            evaluation.decision = lane.criteria.evaluate(job, evaluation.lastBuild, evaluation.adapter);
+            evaluation.policy = lane.policy;
+            if (evaluation.decision.isAction()) {
+                evaluation.acting = lane;
+                break;
+            }
+            evaluation.excluded |= evaluation.decision == SweepDecision.EXCLUDED;
+            if (evaluation.decision == SweepDecision.ACTIVE) {
+                // stale by its builds, so looked at again by the next run of this policy
+                lane.queue.offer(jobName);
+            }
+            LOGGER.log(Level.FINER, "Job '" + jobName + "' " + evaluation.decision.getDescription() + " by policy '" + lane.policy + "'");
+        }
+        metrics.record(SweepMetrics.Phase.STALENESS, start);
+        return evaluation;
+    }
+
+    private static Boolean isDisabled(Evaluation evaluation) {
+        return evaluation.adapter == null ? null : evaluation.adapter.isDisabled(evaluation.job);
+    }
+
+    /**
+     * Gets whether the job was built, enabled or disabled since it was evaluated.
+     */
+    private boolean hasChanged(Evaluation evaluation) {
+        Long lastBuild = index.getLastBuild(evaluation.jobName);
+        Boolean disabled = isDisabled(evaluation);
+        return !(lastBuild == null ? evaluation.lastBuild == null : lastBuild.equals(evaluation.lastBuild))
+                || !(disabled == null ? evaluation.disabled == null : disabled.equals(evaluation.disabled));
+    }
+
+    /**
+     * Takes the action decided for the given job.
+     *
+     * @return the evaluation acted on, a new one if the job changed while waiting for its turn.
+     */
+    private Evaluation act(Evaluation evaluation) throws IOException, InterruptedException {
+        if (evaluation.decision == SweepDecision.REMOVE || evaluation.decision == SweepDecision.DISABLE) {
+            executor.throttle();
+            // the rate and the pacer may have delayed the action long after the evaluation
+            if (hasChanged(evaluation)) {
+                LOGGER.log(Level.FINER, "Job '" + evaluation.jobName + "' changed since it was evaluated, evaluating it again");
+                evaluation = decide(evaluation.job, evaluation.jobName, evaluation.lanes);
+            }
+        }
+        Job<?, ?> job = evaluation.job;
+        String jobName = evaluation.jobName;
+        SweepDecision decision = evaluation.decision;
+        long start;
+        if (decision == SweepDecision.REMOVE) {
+            if (JobArchiver.getArchiveDir() != null) {
+                start = System.nanoTime();
+                // a job that couldn't be archived is kept, and retried by the next sweep
+                JobArchiver.get().archive(job);
+                metrics.record(SweepMetrics.Phase.ARCHIVE, start);
+                metrics.count(SweepMetrics.Counter.ARCHIVED);
+            }
+            LOGGER.log(Level.FINER, "Removing job '" + jobName + "'");
+            start = System.nanoTime();
+            TrashReclaimer.get().delete(job);
+            metrics.record(SweepMetrics.Phase.DELETE, start);
+            metrics.count(SweepMetrics.Counter.DELETED);
+            journal.done(jobName, decision.name(), SweepJournal.OK);
+        } else if (decision == SweepDecision.PRUNE) {
+            LOGGER.log(Level.FINER, "Deleting the old builds of job '" + jobName + "'");
+            start = System.nanoTime();
+            int pruned = evaluation.acting.pruner.prune(job, executor);
+            metrics.record(SweepMetrics.Phase.PRUNE, start);
+            metrics.add(SweepMetrics.Counter.PRUNED_BUILDS, pruned);
+            // looked at again by the next run, whether it builds again or not
+            evaluation.acting.queue.offer(jobName);
+            journal.done(jobName, decision.name(), SweepJournal.OK);
+        } else if (decision == SweepDecision.DISABLE) {
+            LOGGER.log(Level.FINER, "Disabling job '" + jobName + "'");
+            String description = defaultDescription + " '" + today.toString() + "'\n";
+            //TODO: add dependency with https://wiki.jenkins-ci.org/display/JENKINS/OWASP+Markup+Formatter+Plugin
+            // in order to add description in html format
+            // if (Jenkins.getInstance().getMarkupFormatter() instanceof hudson.markup.RawHtmlMarkupFormatter)
+            start = System.nanoTime();
+            disabler.disable(job, evaluation.adapter, description);
+            metrics.record(SweepMetrics.Phase.DISABLE, start);
+            metrics.count(SweepMetrics.Counter.DISABLED);
+        } else {
+            if (evaluation.excluded) {
+                metrics.count(SweepMetrics.Counter.EXCLUDED);
+            }
+            journal.done(jobName, decision.name(), SweepJournal.OK);
+        }
+        return evaluation;
+    }
+
+    /**
+     * What a sweep decided to do with a job.
+     */
+    private static final class Evaluation {
+        private final Job<?, ?> job;
+        private final String jobName;
+        // the policies that picked the job
+        private final List<Lane> lanes;
+        private DisableableAdapter adapter;
+        private Long lastBuild;
+        // null if the job can't be disabled
+        private Boolean disabled;
+        private SweepDecision decision;
+        // the policy behind the decision
+        private String policy;
+        // the policy taking the action, null if there is none
+        private Lane acting;
+        private boolean excluded;
+
+        Evaluation(Job<?, ?> job, String jobName, List<Lane> lanes) {
+            this.job = job;
+            this.jobName = jobName;
+            this.lanes = lanes;
+        }
+    }
+
+    /**
+     * A due policy along with its criteria and queue.
+     */
+    private static final class Lane {
+        private final String policy;
+        private final SweepCriteria criteria;
+        private final StaleJobQueue queue;
+        // in bytes, 0 if there is none
+        private final long spaceTarget;
+        // null unless the policy deletes old builds
+        private final BuildPruner pruner;
+
+        Lane(String policy, SweepCriteria criteria, StaleJobQueue queue, long spaceTarget, BuildPruner pruner) {
+            this.policy = policy;
+            this.criteria = criteria;
+            this.queue = queue;
+            this.spaceTarget = spaceTarget;
+            this.pruner = pruner;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the maintenance of several Jenkins instances sharing a directory, typically on the same NFS backend.
+ *
+ * Each instance appends the plan and the results of its finished sweeps to a common summary, so there is
+ * a single report for all of them. Heavy work is guarded by a lease, held by one instance at a time until
+ * it expires or is renewed by its holder. Both files are only changed under an exclusive {@link FileLock},
+ * which requires lock support from the shared file system, and leases rely on the clocks of the instances
+ * being in sync.
+ *
+ * Nothing is coordinated when no shared directory is configured.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class SharedStorageCoordinator {
+
+    static final String SUMMARY = "summary.log";
+    private static final long MAX_SUMMARY_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static SharedStorageCoordinator get() {
+        return Jenkins.getInstance().getExtensionList(SharedStorageCoordinator.class).get(0);
+    }
+
+    /**
+     * Gets the configured shared directory.
+     *
+     * @return the directory, or null if nothing is coordinated.
+     */
+    static File getSharedDir() {
+        String dir = GlobalPluginConfiguration.get().getSharedDirectory();
+        return StringUtils.isBlank(dir) ? null : new File(dir.trim());
+    }
+
+    /**
+     * Gets the identifier of this instance in the shared files.
+     */
+    String getInstanceId() {
+        return Jenkins.getInstance().getLegacyInstanceId();
+    }
+
+    /**
+     * Takes or renews the lease with the given name, unless another instance holds it.
+     *
+     * @param duration
+     *            time in milliseconds after which the lease can be taken by another instance, unless renewed.
+     * @return true if this instance holds the lease, always the case if nothing is coordinated.
+     */
+    public boolean acquireLease(String name, long duration) throws IOException {
+        File dir = getSharedDir();
+        if (dir == null) {
+            return true;
+        }
+        mkdirs(dir);
+        String me = getInstanceId();
+        RandomAccessFile file = new RandomAccessFile(new File(dir, name + ".lease"), "rw");
+        try {
+            FileLock lock = file.getChannel().lock();
+            try {
+                long now = System.currentTimeMillis();
+                String line = file.length() > 0 ? file.readLine() : null;
+                String[] fields = line == null ? new String[0] : line.split("\t");
+                if (fields.length == 2 && !me.equals(fields[0]) && parseLong(fields[1]) > now) {
+                    return false;
+                }
+                file.setLength(0);
+                file.seek(0);
+                file.write((me + "\t" + (now + duration) + "\n").getBytes("UTF-8"));
+                file.getChannel().force(true);
+                return true;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Releases the lease with the given name if this instance holds it, so that another instance can take it right away.
+     */
+    public void releaseLease(String name) throws IOException {
+        File dir = getSharedDir();
+        File lease = dir == null ? null : new File(dir, name + ".lease");
+        if (lease == null || !lease.isFile()) {
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(lease, "rw");
+        try {
+            FileLock lock = file.getChannel().lock();
+            try {
+                String line = file.length() > 0 ? file.readLine() : null;
+                if (line != null && getInstanceId().equals(line.split("\t")[0])) {
+                    // an empty lease is free
+                    file.setLength(0);
+                    file.getChannel().force(true);
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // a lease that can't be read is free
+            return 0;
+        }
+    }
+
+    /**
+     * Appends the records of the given sweep journal to the shared summary, each prefixed by the identifier
+     * of this instance.
+     */
+    public void publish(File journal) throws IOException {
+        File dir = getSharedDir();
+        if (dir == null || !journal.isFile()) {
+            return;
+        }
+        mkdirs(dir);
+        File summary = new File(dir, SUMMARY);
+        String prefix = getInstanceId() + "\t";
+        FileOutputStream out = new FileOutputStream(summary, true);
+        try {
+            FileLock lock = out.getChannel().lock();
+            try {
+                if (summary.length() > MAX_SUMMARY_SIZE) {
+                    // these records still go to the previous summary, the next ones to a new one
+                    rotate(dir, summary);
+                }
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        writer.write(prefix);
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                } finally {
+                    in.close();
+                }
+                writer.flush();
+                out.getChannel().force(false);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void rotate(File dir, File summary) throws IOException {
+        // renamed under the lock, the instances waiting for it append to the previous summary as well
+        File previous = new File(dir, SUMMARY + ".previous");
+        if (!summary.renameTo(previous) && !(previous.delete() && summary.renameTo(previous))) {
+            throw new IOException("Unable to rename " + summary + " to " + previous);
+        }
+    }
+
+    /**
+     * Copies the shared summary to the given stream, while no instance appends to it.
+     */
+    public void writeSummary(OutputStream out) throws IOException {
+        File dir = getSharedDir();
+        File summary = dir == null ? null : new File(dir, SUMMARY);
+        if (summary == null || !summary.isFile()) {
+            return;
+        }
+        FileChannel in = new FileInputStream(summary).getChannel();
+        try {
+            FileLock lock = in.lock(0, Long.MAX_VALUE, true);
+            try {
+                WritableByteChannel sink = Channels.newChannel(out);
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, sink);
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the configured duration of the leases, in milliseconds.
+     */
+    static long getLeaseDuration() {
+        return TimeUnit.MINUTES.toMillis(GlobalPluginConfiguration.get().getLeaseMinutes());
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Jobs waiting to become stale, ordered by the time of their last build.
+ *
+ * Each sweep only takes the jobs whose last build is older than its purge time, so its cost depends on
+ * the number of jobs that changed since the previous sweep rather than on the total number of jobs.
+ * Jobs come back into the queue when they are built, saved, created, moved, when their attributes in the
+ * {@link JobAttributeIndex} change, or when the sweep settings change.
+ *
+ * Every maintenance policy has its own queue, see {@link Registry}.
+ *
+ * @author Victor Martinez
+ */
+public class StaleJobQueue {
+
+    private static final int COMPACTION_SLACK = 1024;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+    // the last build time of the queued jobs, entries of the priority queue not matching it are outdated
+    private final Map<String, Long> queued = new HashMap<String, Long>();
+    private String settings;
+
+    /**
+     * Queues the job with the given full name again, if it has been built.
+     */
+    public void offer(String fullName) {
+        Long lastBuild = LastBuildIndex.get().getLastBuild(fullName);
+        if (lastBuild != null) {
+            offer(fullName, lastBuild);
+        }
+    }
+
+    synchronized void offer(String fullName, long lastBuild) {
+        Long previous = queued.put(fullName, lastBuild);
+        if (previous == null || previous != lastBuild) {
+            queue.add(new Entry(fullName, lastBuild));
+            compact();
+        }
+    }
+
+    /**
+     * Removes the job with the given full name and, if it was a folder, everything inside it.
+     */
+    public synchronized void remove(String fullName) {
+        queued.remove(fullName);
+        String prefix = fullName + '/';
+        for (String name : new ArrayList<String>(queued.keySet())) {
+            if (name.startsWith(prefix)) {
+                queued.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Moves the queued jobs of a renamed or moved item, including those of its children.
+     */
+    public synchronized void move(String oldFullName, String newFullName) {
+        String prefix = oldFullName + '/';
+        for (Map.Entry<String, Long> entry : new ArrayList<Map.Entry<String, Long>>(queued.entrySet())) {
+            String name = entry.getKey();
+            if (name.equals(oldFullName)) {
+                queued.remove(name);
+                offer(newFullName, entry.getValue());
+            } else if (name.startsWith(prefix)) {
+                queued.remove(name);
+                offer(newFullName + '/' + name.substring(prefix.length()), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Makes sure the queue holds every built job if the sweep settings changed since the last call.
+     *
+     * @param settings
+     *            the settings affecting which jobs are picked, in any form suitable for comparison.
+     */
+    public synchronized void prepare(String settings) {
+        if (!settings.equals(this.settings)) {
+            queue.clear();
+            queued.clear();
+            for (Map.Entry<String, Long> entry : LastBuildIndex.get().getLastBuilds().entrySet()) {
+                queued.put(entry.getKey(), entry.getValue());
+                queue.add(new Entry(entry.getKey(), entry.getValue()));
+            }
+            this.settings = settings;
+        }
+    }
+
+    /**
+     * Takes the jobs whose last build happened before the given time out of the queue.
+     *
+     * @return the full names of the jobs, oldest build first.
+     */
+    public synchronized List<String> poll(long purgeTime) {
+        List<String> names = new ArrayList<String>();
+        while (!queue.isEmpty() && queue.peek().lastBuild < purgeTime) {
+            Entry entry = queue.poll();
+            Long lastBuild = queued.get(entry.fullName);
+            if (lastBuild != null && lastBuild == entry.lastBuild) {
+                queued.remove(entry.fullName);
+                names.add(entry.fullName);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Gets the number of queued jobs.
+     */
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    private void compact() {
+        if (queue.size() > 2 * queued.size() + COMPACTION_SLACK) {
+            queue.clear();
+            for (Map.Entry<String, Long> entry : queued.entrySet()) {
+                queue.add(new Entry(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String fullName;
+        private final long lastBuild;
+
+        Entry(String fullName, long lastBuild) {
+            this.fullName = fullName;
+            this.lastBuild = lastBuild;
+        }
+
+        public int compareTo(Entry other) {
+            return lastBuild < other.lastBuild ? -1 : (lastBuild == other.lastBuild ? 0 : 1);
+        }
+    }
+
+    /**
+     * The queues of the maintenance policies, by policy name.
+     */
+    @Extension
+    public static final class Registry {
+
+        private final ConcurrentMap<String, StaleJobQueue> queues = new ConcurrentHashMap<String, StaleJobQueue>();
+
+        /**
+         * Gets this extension's instance.
+         *
+         * @return the instance of this extension.
+         */
+        public static Registry get() {
+            return Jenkins.getInstance().getExtensionList(Registry.class).get(0);
+        }
+
+        /**
+         * Gets the queue of the given policy, creating an empty one if needed.
+         */
+        public StaleJobQueue getQueue(String policy) {
+            StaleJobQueue queue = queues.get(policy);
+            if (queue == null) {
+                queue = new StaleJobQueue();
+                StaleJobQueue previous = queues.putIfAbsent(policy, queue);
+                if (previous != null) {
+                    queue = previous;
+                }
+            }
+            return queue;
+        }
+
+        /**
+         * Drops the queues of the policies that no longer exist.
+         */
+        public void retain(Collection<String> policies) {
+            queues.keySet().retainAll(policies);
+        }
+
+        /**
+         * Queues the job with the given full name again in every queue, if it has been built.
+         */
+        public void offer(String fullName) {
+            Long lastBuild = LastBuildIndex.get().getLastBuild(fullName);
+            if (lastBuild != null) {
+                for (StaleJobQueue queue : queues.values()) {
+                    queue.offer(fullName, lastBuild);
+                }
+            }
+        }
+
+        public void remove(String fullName) {
+            for (StaleJobQueue queue : queues.values()) {
+                queue.remove(fullName);
+            }
+        }
+
+        public void move(String oldFullName, String newFullName) {
+            for (StaleJobQueue queue : queues.values()) {
+                queue.move(oldFullName, newFullName);
+            }
+        }
+    }
+
+    /**
+     * Brings created, moved and deleted jobs in and out of the queues.
+     */
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Job) {
+                Registry.get().offer(item.getFullName());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            Registry.get().move(oldFullName, newFullName);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            Registry.get().remove(item.getFullName());
+        }
+    }
+
+    /**
+     * Queues saved jobs again, e.g. after they have been enabled.
+     */
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job) {
+                Registry.get().offer(((Job<?, ?>) o).getFullName());
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Job;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Combines the enabled {@link StalenessSignal}s, looked up once per sweep.
+ *
+ * @author Victor Martinez
+ */
+final class StalenessScorer {
+
+    private final List<StalenessSignal> signals = new ArrayList<StalenessSignal>();
+
+    /**
+     * Uses the enabled signals.
+     */
+    StalenessScorer() {
+        this(StalenessSignal.all());
+    }
+
+    StalenessScorer(Collection<? extends StalenessSignal> signals) {
+        for (StalenessSignal signal : signals) {
+            if (signal.isEnabled()) {
+                this.signals.add(signal);
+            }
+        }
+    }
+
+    /**
+     * Finds a signal of activity of the given job since the given time.
+     *
+     * @return the signal, or null if the job has no activity since then.
+     */
+    StalenessSignal findActivity(Job<?, ?> job, long since) {
+        for (StalenessSignal signal : signals) {
+            Long last = signal.getLastActivity(job);
+            if (last != null && last >= since) {
+                return signal;
+            }
+        }
+        return null;
+    }
+}
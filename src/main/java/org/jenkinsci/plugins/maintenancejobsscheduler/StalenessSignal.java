@@ -0,0 +1,200 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.SCMPollListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.scm.PollingResult;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.Messages;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Activity of a job other than its builds, which keeps it from being stale.
+ *
+ * Signals are only asked about the jobs the maintenance is about to act on, so they must answer from
+ * memory, e.g. from what listeners have recorded, rather than by reading the files of the job.
+ *
+ * @author Victor Martinez
+ */
+public abstract class StalenessSignal implements ExtensionPoint {
+
+    /**
+     * Gets every signal, enabled or not.
+     */
+    public static ExtensionList<StalenessSignal> all() {
+        return Jenkins.getInstance().getExtensionList(StalenessSignal.class);
+    }
+
+    /**
+     * Gets a human readable name of the activity, to be preceded by "recent".
+     */
+    public abstract String getDisplayName();
+
+    /**
+     * Gets whether this signal is taken into account.
+     */
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Gets the time of the last activity of the given job.
+     *
+     * @return the time in milliseconds, null if there is no known activity.
+     */
+    public abstract Long getLastActivity(Job<?, ?> job);
+
+    /**
+     * Jobs waiting in the queue or building are active.
+     */
+    @Extension
+    public static final class QueueSignal extends StalenessSignal {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.signal_queue();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return GlobalPluginConfiguration.get().isQueueSignal();
+        }
+
+        @Override
+        public Long getLastActivity(Job<?, ?> job) {
+            return job.isInQueue() || job.isBuilding() ? System.currentTimeMillis() : null;
+        }
+    }
+
+    /**
+     * Jobs triggered by a recently built upstream job are active, according to the dependency graph.
+     */
+    @Extension
+    public static final class UpstreamSignal extends StalenessSignal {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.signal_upstream();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return GlobalPluginConfiguration.get().isUpstreamSignal();
+        }
+
+        @Override
+        public Long getLastActivity(Job<?, ?> job) {
+            if (!(job instanceof AbstractProject)) {
+                return null;
+            }
+            LastBuildIndex index = LastBuildIndex.get();
+            Long last = null;
+            for (AbstractProject<?, ?> upstream : ((AbstractProject<?, ?>) job).getUpstreamProjects()) {
+                Long lastBuild = index.getLastBuild(upstream.getFullName());
+                if (lastBuild != null && (last == null || lastBuild > last)) {
+                    last = lastBuild;
+                }
+            }
+            return last;
+        }
+    }
+
+    /**
+     * Jobs whose configuration has been saved since Jenkins started are active, unless the maintenance saved them.
+     */
+    @Extension
+    public static final class ConfigChangeSignal extends StalenessSignal {
+
+        // set while the maintenance itself saves jobs on the current thread
+        private static final ThreadLocal<Boolean> MAINTENANCE = new ThreadLocal<Boolean>();
+
+        private final ConcurrentMap<String, Long> changes = new ConcurrentHashMap<String, Long>();
+
+        /**
+         * Ignores the jobs saved by the current thread until {@link #endMaintenance()}.
+         */
+        static void beginMaintenance() {
+            MAINTENANCE.set(Boolean.TRUE);
+        }
+
+        static void endMaintenance() {
+            MAINTENANCE.remove();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return Messages.signal_config_change();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return GlobalPluginConfiguration.get().isConfigChangeSignal();
+        }
+
+        @Override
+        public Long getLastActivity(Job<?, ?> job) {
+            return changes.get(job.getFullName());
+        }
+    }
+
+    /**
+     * Jobs whose SCM polling found changes since Jenkins started are active.
+     */
+    @Extension
+    public static final class ScmPollSignal extends StalenessSignal {
+
+        private final ConcurrentMap<String, Long> polls = new ConcurrentHashMap<String, Long>();
+
+        @Override
+        public String getDisplayName() {
+            return Messages.signal_scm_poll();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return GlobalPluginConfiguration.get().isScmPollSignal();
+        }
+
+        @Override
+        public Long getLastActivity(Job<?, ?> job) {
+            return polls.get(job.getFullName());
+        }
+    }
+
+    /**
+     * Records the saved jobs.
+     */
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job && ConfigChangeSignal.MAINTENANCE.get() == null) {
+                all().get(ConfigChangeSignal.class).changes.put(((Job<?, ?>) o).getFullName(), System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Records the jobs whose polling found changes.
+     */
+    @Extension
+    public static final class SCMPollListenerImpl extends SCMPollListener {
+
+        @Override
+        public void onPollingSuccess(AbstractProject<?, ?> project, TaskListener listener, PollingResult result) {
+            if (result.hasChanges()) {
+                all().get(ScmPollSignal.class).polls.put(project.getFullName(), System.currentTimeMillis());
+            }
+        }
+    }
+}
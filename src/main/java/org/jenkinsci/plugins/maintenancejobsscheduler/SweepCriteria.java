@@ -0,0 +1,197 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Job;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what the maintenance does with each job, without changing anything.
+ *
+ * The purge time is computed once, when the criteria are created, from the time the sweep started.
+ *
+ * @author Victor Martinez
+ */
+final class SweepCriteria {
+
+    private final int filter;
+    private final long purgeTime;
+    // null selects every job
+    private final ExclusionMatcher inclusions;
+    private final ExclusionMatcher exclusions;
+    private final MaintenanceAction action;
+    // null selects every job
+    private JobSelector.Selection selection;
+    private SweepMetrics metrics;
+    private StalenessScorer scorer;
+
+    /**
+     * @param filter
+     *            number of days without builds after which a job is stale.
+     * @param excludedJobs
+     *            one regular expression per line, matched against the full names of the jobs.
+     * @param removeJobs
+     *            whether stale jobs are removed rather than disabled.
+     */
+    SweepCriteria(int filter, String excludedJobs, boolean removeJobs) {
+        this(filter, null, excludedJobs, removeJobs ? MaintenanceAction.REMOVE : MaintenanceAction.DISABLE);
+    }
+
+    /**
+     * @param filter
+     *            number of days without builds after which a job is stale.
+     * @param includedJobs
+     *            one regular expression per line, matched against the full names of the jobs,
+     *            blank to select every job.
+     * @param excludedJobs
+     *            one regular expression per line, matched against the full names of the jobs.
+     * @param action
+     *            what is done with the stale jobs.
+     */
+    SweepCriteria(int filter, String includedJobs, String excludedJobs, MaintenanceAction action) {
+        this(filter, includedJobs, excludedJobs, action, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now
+     *            the time the age of the jobs is measured from, in milliseconds.
+     * @see #SweepCriteria(int, String, String, MaintenanceAction)
+     */
+    SweepCriteria(int filter, String includedJobs, String excludedJobs, MaintenanceAction action, long now) {
+        this(filter, StringUtils.isBlank(includedJobs) ? null : ExclusionMatcher.of(includedJobs),
+                ExclusionMatcher.of(excludedJobs), action, now);
+    }
+
+    /**
+     * @param inclusions
+     *            the compiled included jobs, null to select every job.
+     * @param exclusions
+     *            the compiled excluded jobs.
+     * @see #SweepCriteria(int, String, String, MaintenanceAction, long)
+     */
+    SweepCriteria(int filter, ExclusionMatcher inclusions, ExclusionMatcher exclusions, MaintenanceAction action, long now) {
+        this.filter = filter;
+        // in long arithmetic, the days don't fit in an int once converted to milliseconds
+        this.purgeTime = now - TimeUnit.DAYS.toMillis(filter);
+        this.inclusions = inclusions;
+        this.exclusions = exclusions;
+        this.action = action;
+    }
+
+    /**
+     * Decides what to do with the given job.
+     *
+     * @param lastBuild
+     *            the time of the last build of the job, null if it doesn't have any builds yet.
+     * @param adapter
+     *            the adapter of the job, null if it can't be disabled.
+     */
+    SweepDecision evaluate(Job<?, ?> job, Long lastBuild, DisableableAdapter adapter) {
+        SweepDecision decision = evaluate(job.getFullName(), lastBuild, adapter == null ? null : adapter.isDisabled(job));
+        // only the jobs about to be changed are asked about, in a single pass over the signals
+        if ((decision == SweepDecision.DISABLE || decision == SweepDecision.REMOVE) && scorer != null
+                && scorer.findActivity(job, purgeTime) != null) {
+            return SweepDecision.ACTIVE;
+        }
+        return decision;
+    }
+
+    /**
+     * Decides what to do with the job with the given full name.
+     *
+     * @param lastBuild
+     *            the time of the last build of the job, null if it doesn't have any builds yet.
+     * @param disabled
+     *            whether the job is disabled, null if it can't be disabled.
+     */
+    SweepDecision evaluate(String jobName, Long lastBuild, Boolean disabled) {
+        if (lastBuild == null) {
+            return SweepDecision.NO_BUILDS;
+        } else if (action == MaintenanceAction.PRUNE_BUILDS) {
+            // recently built jobs are the ones with the most builds
+            return !isSelected(jobName) ? SweepDecision.NOT_SELECTED
+                    : isExcluded(jobName) ? SweepDecision.EXCLUDED : SweepDecision.PRUNE;
+        } else if (disabled != null && disabled) {
+            return SweepDecision.DISABLED;
+        } else if (lastBuild >= purgeTime) {
+            return SweepDecision.RECENT;
+        } else if (!isSelected(jobName)) {
+            return SweepDecision.NOT_SELECTED;
+        } else if (isExcluded(jobName)) {
+            return SweepDecision.EXCLUDED;
+        } else if (action == MaintenanceAction.REMOVE) {
+            return SweepDecision.REMOVE;
+        } else if (disabled == null) {
+            return SweepDecision.NOT_DISABLEABLE;
+        }
+        return SweepDecision.DISABLE;
+    }
+
+    private boolean isSelected(String jobName) {
+        if (selection != null && !selection.matches(jobName)) {
+            return false;
+        }
+        // unlike the excluded jobs, an invalid rule selects nothing
+        return inclusions == null || (inclusions.isValid() && inclusions.matches(jobName));
+    }
+
+    private boolean isExcluded(String jobName) {
+        if (metrics == null) {
+            return exclusions.matches(jobName);
+        }
+        long start = System.nanoTime();
+        try {
+            return exclusions.matches(jobName);
+        } finally {
+            metrics.record(SweepMetrics.Phase.EXCLUSION, start);
+        }
+    }
+
+    /**
+     * Times the exclusion matching into the given metrics.
+     */
+    void setMetrics(SweepMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    MaintenanceAction getAction() {
+        return action;
+    }
+
+    /**
+     * Keeps the jobs with other activity than their builds from being stale, see {@link StalenessSignal}.
+     */
+    void setScorer(StalenessScorer scorer) {
+        this.scorer = scorer;
+    }
+
+    /**
+     * Restricts the selected jobs to those of the given resolved {@link JobSelector}.
+     */
+    void setSelection(JobSelector.Selection selection) {
+        this.selection = selection;
+    }
+
+    long getPurgeTime() {
+        return purgeTime;
+    }
+
+    /**
+     * Gets the compiled included jobs, null if every job is selected.
+     */
+    ExclusionMatcher getInclusions() {
+        return inclusions;
+    }
+
+    ExclusionMatcher getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * Gets the settings affecting which jobs are picked, in a form suitable for comparison.
+     */
+    String getSettings() {
+        String settings = filter + "\n" + action + "\n" + (inclusions == null ? "" : inclusions.getRules()) + "\n" + exclusions.getRules();
+        return selection == null ? settings : settings + "\n" + selection.getSettings();
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.jenkinsci.plugins.Messages;
+import org.jvnet.localizer.Localizable;
+
+/**
+ * What the maintenance does with a job, and why.
+ *
+ * @author Victor Martinez
+ */
+public enum SweepDecision {
+    DISABLE(Messages._decision_disable()),
+    REMOVE(Messages._decision_remove()),
+    PRUNE(Messages._decision_prune()),
+    NO_BUILDS(Messages._decision_no_builds()),
+    DISABLED(Messages._decision_disabled()),
+    RECENT(Messages._decision_recent()),
+    ACTIVE(Messages._decision_active()),
+    NOT_SELECTED(Messages._decision_not_selected()),
+    EXCLUDED(Messages._decision_excluded()),
+    NOT_DISABLEABLE(Messages._decision_not_disableable());
+
+    private final Localizable description;
+
+    SweepDecision(Localizable description) {
+        this.description = description;
+    }
+
+    /**
+     * Gets whether this decision changes the job.
+     */
+    public boolean isAction() {
+        return this == DISABLE || this == REMOVE || this == PRUNE;
+    }
+
+    /**
+     * Gets a human readable explanation, to be preceded by the job name.
+     */
+    public String getDescription() {
+        return description.toString();
+    }
+}
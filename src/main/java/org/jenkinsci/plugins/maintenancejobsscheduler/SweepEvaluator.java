@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.security.ACL;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates the jobs of a sweep concurrently, before any of them is acted on.
+ *
+ * Evaluating a job mostly waits for its files to be loaded, so the evaluations run on virtual threads
+ * when the JDK has them, on a fixed pool of daemon threads otherwise. Either way at most the given
+ * number of evaluations are in flight. The results are gathered in a lock-free queue and handed back
+ * in the order of the submitted jobs.
+ *
+ * @author Victor Martinez
+ */
+final class SweepEvaluator {
+
+    private static final Logger LOGGER = Logger.getLogger(SweepEvaluator.class.getName());
+
+    /**
+     * Evaluation of a single job.
+     */
+    interface Task<T> {
+        /**
+         * @return the result, null if there is nothing to act on.
+         */
+        T call() throws IOException, InterruptedException;
+    }
+
+    private final ExecutorService pool;
+    private final Semaphore inFlight;
+    private final boolean virtual;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile boolean interrupted = false;
+
+    /**
+     * @param name
+     *            prefix of the platform thread names.
+     * @param concurrency
+     *            maximum number of evaluations in flight, at least one.
+     */
+    SweepEvaluator(final String name, int concurrency) {
+        this.inFlight = new Semaphore(Math.max(1, concurrency));
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        this.virtual = virtualThreads != null;
+        if (virtual) {
+            pool = virtualThreads;
+        } else {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(Math.max(1, concurrency), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name + " evaluator #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, looked up reflectively since the plugin
+     * still compiles for JDKs without them.
+     *
+     * @return the executor, null if the JDK has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            // e.g. preview features not enabled on the JDK 19 and 20
+            LOGGER.log(Level.FINE, "Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets whether the evaluations run on virtual threads.
+     */
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Evaluates the given tasks and waits for all of them. A failing task is logged and counted, it has no result.
+     *
+     * @param names
+     *            the job each task is about, used for reporting failures.
+     * @return the results that aren't null, in the order of the tasks.
+     */
+    <T> List<T> evaluate(List<String> names, List<? extends Task<T>> tasks) throws InterruptedException {
+        final ConcurrentLinkedQueue<Result<T>> results = new ConcurrentLinkedQueue<Result<T>>();
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                if (interrupted || Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                // the traversal waits for a slot instead of queuing every job
+                inFlight.acquire();
+                final int position = i;
+                final String jobName = names.get(i);
+                final Task<T> task = tasks.get(i);
+                pool.execute(new Runnable() {
+                    public void run() {
+                        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+                        try {
+                            T result = task.call();
+                            if (result != null) {
+                                results.add(new Result<T>(position, result));
+                            }
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                            LOGGER.log(Level.WARNING, "Unable to evaluate job '" + jobName + "'", e);
+                        } finally {
+                            SecurityContextHolder.setContext(old);
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.log(Level.FINER, "Waiting for " + results.size() + "/" + tasks.size() + " evaluations");
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            throw e;
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+        List<Result<T>> sorted = new ArrayList<Result<T>>(results);
+        Collections.sort(sorted, new Comparator<Result<T>>() {
+            public int compare(Result<T> a, Result<T> b) {
+                return a.position < b.position ? -1 : a.position == b.position ? 0 : 1;
+            }
+        });
+        List<T> values = new ArrayList<T>(sorted.size());
+        for (Result<T> result : sorted) {
+            values.add(result.value);
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of tasks that failed.
+     */
+    int getFailures() {
+        return failures.get();
+    }
+
+    private static final class Result<T> {
+        private final int position;
+        private final T value;
+
+        Result(int position, T value) {
+            this.position = position;
+            this.value = value;
+        }
+    }
+}
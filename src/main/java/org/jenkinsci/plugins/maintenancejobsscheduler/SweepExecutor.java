@@ -0,0 +1,170 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.security.ACL;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the per job work of a sweep on a bounded pool of worker threads, optionally capping
+ * the number of actions per second.
+ *
+ * A failing job is logged and counted, it never aborts the rest of the sweep.
+ * With a single worker everything runs on the calling thread.
+ *
+ * @author Victor Martinez
+ */
+final class SweepExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(SweepExecutor.class.getName());
+
+    /**
+     * Work to be done for a single job.
+     */
+    interface Task {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final long interval;
+    private final AtomicInteger failures = new AtomicInteger();
+    private long nextAction = System.nanoTime();
+    // null if the actions are only limited by the rate
+    private SweepPacer pacer;
+    private volatile boolean interrupted = false;
+
+    /**
+     * @param name
+     *            prefix of the worker thread names.
+     * @param threads
+     *            number of worker threads, values lower than 2 mean the calling thread.
+     * @param actionsPerSecond
+     *            maximum number of actions per second, 0 or lower means unlimited.
+     */
+    SweepExecutor(final String name, int threads, int actionsPerSecond) {
+        this.interval = actionsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / actionsPerSecond : 0;
+        if (threads > 1) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(threads * 4), new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, name + " worker #" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    },
+                    // the traversal slows down to the pace of the workers instead of queuing every job
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        } else {
+            pool = null;
+        }
+    }
+
+    void setPacer(SweepPacer pacer) {
+        this.pacer = pacer;
+    }
+
+    /**
+     * Runs the given task, on a worker thread if there are any.
+     *
+     * @param jobName
+     *            the job the task is about, used for reporting failures.
+     */
+    void submit(final String jobName, final Task task) throws InterruptedException {
+        if (interrupted || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        if (pool == null) {
+            runSafely(jobName, task);
+            return;
+        }
+        pool.execute(new Runnable() {
+            public void run() {
+                SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+                try {
+                    runSafely(jobName, task);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } finally {
+                    SecurityContextHolder.setContext(old);
+                }
+            }
+        });
+    }
+
+    private void runSafely(String jobName, Task task) throws InterruptedException {
+        try {
+            task.run();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Unable to process job '" + jobName + "'", e);
+        }
+    }
+
+    /**
+     * Blocks until the next action is allowed by the configured rate, then by the pacer if any.
+     *
+     * @throws SweepPacer.WindowClosedException
+     *             if the maintenance window ended.
+     */
+    void throttle() throws IOException, InterruptedException {
+        if (interval > 0) {
+            waitForRate();
+        }
+        if (pacer != null) {
+            pacer.pace();
+        }
+    }
+
+    private void waitForRate() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextAction - now < 0) {
+                nextAction = now;
+            }
+            wait = nextAction - now;
+            nextAction += interval;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Waits for all the submitted tasks to complete and releases the worker threads.
+     */
+    void await() throws InterruptedException {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOGGER.log(Level.FINER, "Waiting for " + pool.getActiveCount() + " workers");
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                throw e;
+            }
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Gets the number of tasks that failed.
+     */
+    int getFailures() {
+        return failures.get();
+    }
+}
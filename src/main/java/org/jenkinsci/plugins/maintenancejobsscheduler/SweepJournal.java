@@ -0,0 +1,178 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the current sweep: the jobs it is about to look at, then what was done with each of them.
+ *
+ * The journal is synced to disk in batches, and renamed once the sweep finishes. A journal left behind
+ * by a restart or a dead thread tells the next sweep which jobs still have to be looked at.
+ *
+ * Each line is a record made of tab separated fields, job names can't contain control characters:
+ * <pre>
+ * time START sweep
+ * time PLAN  job policy...
+ * time DONE  job action result
+ * time END   sweep
+ * </pre>
+ *
+ * @author Victor Martinez
+ */
+final class SweepJournal {
+
+    static final String OK = "OK";
+    static final String FAILED = "FAILED";
+
+    private static final String FILE_NAME = "journal.log";
+    private static final int SYNC_RECORDS = 100;
+    private static final long SYNC_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    private final File file;
+    private final String sweep;
+    private final FileOutputStream out;
+    private final Writer writer;
+    private int unsynced = 0;
+    private long lastSync = System.currentTimeMillis();
+
+    private SweepJournal(File file, String sweep) throws IOException {
+        this.file = file;
+        this.sweep = sweep;
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        this.out = new FileOutputStream(file, true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+    }
+
+    static File getFile() {
+        return new File(LastBuildIndex.getPluginRootDir(), FILE_NAME);
+    }
+
+    /**
+     * Gets the journal of the last finished sweep.
+     */
+    static File getPreviousFile() {
+        return new File(LastBuildIndex.getPluginRootDir(), FILE_NAME + ".previous");
+    }
+
+    /**
+     * Gets the jobs planned by an unfinished sweep that weren't successfully processed.
+     *
+     * @return the names of the policies that picked each job, by job full name, empty if the last sweep finished.
+     */
+    static Map<String, List<String>> readUnfinished() throws IOException {
+        Map<String, List<String>> pending = new LinkedHashMap<String, List<String>>();
+        File file = getFile();
+        if (!file.exists()) {
+            return pending;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 3) {
+                    // the end of a record cut short by a crash
+                    continue;
+                }
+                String type = fields[1];
+                if ("START".equals(type) || "END".equals(type)) {
+                    pending.clear();
+                } else if ("PLAN".equals(type)) {
+                    pending.put(fields[2], new ArrayList<String>(Arrays.asList(fields).subList(3, fields.length)));
+                } else if ("DONE".equals(type) && fields.length == 5 && OK.equals(fields[4])) {
+                    pending.remove(fields[2]);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return pending;
+    }
+
+    /**
+     * Starts the journal of a new sweep, replacing the one of the previous sweep.
+     *
+     * @param plan
+     *            the names of the policies that picked each job, by job full name.
+     */
+    static SweepJournal start(String sweep, Map<String, List<String>> plan) throws IOException {
+        File file = getFile();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+        SweepJournal journal = new SweepJournal(file, sweep);
+        journal.append("START", sweep);
+        for (Map.Entry<String, List<String>> entry : plan.entrySet()) {
+            StringBuilder policies = new StringBuilder(entry.getKey());
+            for (String policy : entry.getValue()) {
+                policies.append('\t').append(policy.replace('\t', ' '));
+            }
+            journal.append("PLAN", policies.toString());
+        }
+        journal.sync();
+        return journal;
+    }
+
+    /**
+     * Records what was done with a job.
+     *
+     * @param result
+     *            either {@link #OK} or {@link #FAILED}, only failed jobs are looked at again after a restart.
+     */
+    synchronized void done(String job, String action, String result) throws IOException {
+        append("DONE", job + "\t" + action + "\t" + result);
+        if (++unsynced >= SYNC_RECORDS || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL) {
+            sync();
+        }
+    }
+
+    /**
+     * Records the end of the sweep and keeps the journal aside for inspection.
+     */
+    synchronized void finish() throws IOException {
+        append("END", sweep);
+        close();
+        File previous = getPreviousFile();
+        if (!file.renameTo(previous) && !(previous.delete() && file.renameTo(previous))) {
+            throw new IOException("Unable to rename " + file + " to " + previous);
+        }
+    }
+
+    /**
+     * Syncs what has been recorded so far and closes the journal, leaving the sweep unfinished.
+     */
+    synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void append(String type, String fields) throws IOException {
+        writer.write(System.currentTimeMillis() + "\t" + type + "\t" + fields + "\n");
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        out.getChannel().force(false);
+        unsynced = 0;
+        lastSync = System.currentTimeMillis();
+    }
+}
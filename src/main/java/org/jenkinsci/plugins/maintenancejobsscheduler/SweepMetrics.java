@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timers of the maintenance sweeps since Jenkins started.
+ *
+ * Values only grow, so that rates and averages can be computed by whoever scrapes them,
+ * e.g. through {@link GlobalPluginConfiguration#doMetrics}.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class SweepMetrics {
+
+    /**
+     * Timed parts of a sweep.
+     */
+    public enum Phase {
+        /** Finding the jobs to look at. */
+        TRAVERSAL,
+        /** Ranking the stale jobs by size, for the policies with a space target. */
+        SIZING,
+        /** Deciding what to do with a job, exclusion matching included. */
+        STALENESS,
+        /** Matching a job against the excluded jobs. */
+        EXCLUSION,
+        DISABLE,
+        /** Archiving a job before it is removed. */
+        ARCHIVE,
+        /** Removing a job, its files are deleted later on. */
+        DELETE,
+        /** Deleting the old builds of a job. */
+        PRUNE,
+        /** Deleting the files of the removed jobs in the background. */
+        RECLAIM,
+        /** Waiting for the instance to be less busy, see {@link SweepPacer}. */
+        PACING
+    }
+
+    /**
+     * Counted events.
+     */
+    public enum Counter {
+        RUNS,
+        SCANNED,
+        DISABLED,
+        DELETED,
+        ARCHIVED,
+        /** Old builds deleted. */
+        PRUNED_BUILDS,
+        EXCLUDED,
+        FAILED,
+        /** Bytes freed by deleting the files of the removed jobs. */
+        RECLAIMED_BYTES
+    }
+
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final AtomicLongArray phaseCounts = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private volatile long lastRunStarted = 0;
+    private volatile long lastRunDuration = 0;
+    private volatile long lastSuccess = 0;
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static SweepMetrics get() {
+        return Jenkins.getInstance().getExtensionList(SweepMetrics.class).get(0);
+    }
+
+    public void count(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * Records the time spent in a phase.
+     *
+     * @param start
+     *            the value of {@link System#nanoTime()} when the phase started.
+     */
+    public void record(Phase phase, long start) {
+        phaseCounts.incrementAndGet(phase.ordinal());
+        phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the total time spent in a phase.
+     */
+    public long getTime(Phase phase, TimeUnit unit) {
+        return unit.convert(phaseNanos.get(phase.ordinal()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Marks the start of a sweep.
+     *
+     * @return the value to give back to {@link #sweepFinished(long, boolean)}.
+     */
+    public long sweepStarted() {
+        count(Counter.RUNS);
+        lastRunStarted = System.currentTimeMillis();
+        return System.nanoTime();
+    }
+
+    public void sweepFinished(long start, boolean success) {
+        lastRunDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (success) {
+            lastSuccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Gets the time when the last successful sweep ended, 0 if none did.
+     */
+    public long getLastSuccess() {
+        return lastSuccess;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject counts = new JSONObject();
+        for (Counter counter : Counter.values()) {
+            counts.element(counter.name().toLowerCase(Locale.ENGLISH), get(counter));
+        }
+        JSONObject phases = new JSONObject();
+        for (Phase phase : Phase.values()) {
+            phases.element(phase.name().toLowerCase(Locale.ENGLISH), new JSONObject()
+                    .element("count", phaseCounts.get(phase.ordinal()))
+                    .element("totalMillis", getTime(phase, TimeUnit.MILLISECONDS)));
+        }
+        return new JSONObject()
+                .element("counters", counts)
+                .element("phases", phases)
+                .element("lastRunStarted", lastRunStarted)
+                .element("lastRunDurationMillis", lastRunDuration)
+                .element("lastSuccess", lastSuccess);
+    }
+}
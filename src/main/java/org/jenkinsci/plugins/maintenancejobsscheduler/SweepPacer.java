@@ -0,0 +1,225 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Computer;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a sweep from competing with the builds: it stops at the end of the maintenance window, the next time
+ * of day configured after its start, and in adaptive mode it slows down or pauses its actions while the
+ * controller is busy.
+ *
+ * The load is the highest of three ratios to their configured threshold: the busy executors, the buildable
+ * items waiting in the queue and the time a small synced write to JENKINS_HOME takes. It is sampled every
+ * few seconds. Below half the thresholds actions run at full speed, above the thresholds they pause, and in
+ * between each action is delayed by up to a second.
+ *
+ * @author Victor Martinez
+ */
+final class SweepPacer {
+
+    private static final Logger LOGGER = Logger.getLogger(SweepPacer.class.getName());
+
+    private static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final long PAUSE_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_SLOW_DOWN = TimeUnit.SECONDS.toMillis(1);
+    private static final int PROBE_SIZE = 4096;
+    private static final Pattern TIME_OF_DAY = Pattern.compile("([01]?\\d|2[0-3]):([0-5]\\d)");
+
+    /**
+     * Thrown when an action is about to start after the end of the maintenance window.
+     */
+    static final class WindowClosedException extends IOException {
+        WindowClosedException() {
+            super("The maintenance window is over");
+        }
+    }
+
+    private final long windowEnd;
+    private final boolean adaptive;
+    private final int busyExecutorsPercent;
+    private final int busyQueueLength;
+    private final int busyDiskMillis;
+    private SweepMetrics metrics;
+    private long lastSample = 0;
+    private double load = 0;
+
+    /**
+     * @param windowEnd
+     *            time after which no action starts, {@link Long#MAX_VALUE} if there is none.
+     * @param adaptive
+     *            whether the actions are paced by the load.
+     * @param busyExecutorsPercent
+     *            percentage of busy executors above which actions pause, 0 to ignore the executors.
+     * @param busyQueueLength
+     *            number of buildable items in the queue above which actions pause, 0 to ignore the queue.
+     * @param busyDiskMillis
+     *            duration of the disk probe above which actions pause, 0 to ignore the disk.
+     */
+    SweepPacer(long windowEnd, boolean adaptive, int busyExecutorsPercent, int busyQueueLength, int busyDiskMillis) {
+        this.windowEnd = windowEnd;
+        this.adaptive = adaptive;
+        this.busyExecutorsPercent = busyExecutorsPercent;
+        this.busyQueueLength = busyQueueLength;
+        this.busyDiskMillis = busyDiskMillis;
+    }
+
+    /**
+     * Creates the pacer of a sweep started at the given time.
+     */
+    static SweepPacer of(GlobalPluginConfiguration conf, long started) {
+        int windowEnd = parseTimeOfDay(conf.getWindowEnd());
+        return new SweepPacer(windowEnd < 0 ? Long.MAX_VALUE : getWindowEnd(windowEnd, started), conf.isAdaptivePacing(),
+                conf.getBusyExecutorsPercent(), conf.getBusyQueueLength(), conf.getBusyDiskMillis());
+    }
+
+    /**
+     * Parses a time of day written as HH:mm.
+     *
+     * @return the minutes since midnight, -1 if the value is blank or invalid.
+     */
+    static int parseTimeOfDay(String value) {
+        Matcher matcher = value == null ? null : TIME_OF_DAY.matcher(value.trim());
+        if (matcher == null || !matcher.matches()) {
+            return -1;
+        }
+        return Integer.parseInt(matcher.group(1)) * 60 + Integer.parseInt(matcher.group(2));
+    }
+
+    /**
+     * Gets the first time after the given start at the given minutes since midnight, in the local time zone.
+     */
+    static long getWindowEnd(int minutesOfDay, long started) {
+        Calendar end = Calendar.getInstance();
+        end.setTimeInMillis(started);
+        end.set(Calendar.HOUR_OF_DAY, minutesOfDay / 60);
+        end.set(Calendar.MINUTE, minutesOfDay % 60);
+        end.set(Calendar.SECOND, 0);
+        end.set(Calendar.MILLISECOND, 0);
+        if (end.getTimeInMillis() <= started) {
+            end.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return end.getTimeInMillis();
+    }
+
+    void setMetrics(SweepMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    boolean isWindowClosed() {
+        return System.currentTimeMillis() >= windowEnd;
+    }
+
+    /**
+     * Waits until the load allows the next action.
+     *
+     * @throws WindowClosedException
+     *             if the maintenance window ended, before or while waiting.
+     */
+    void pace() throws IOException, InterruptedException {
+        if (isWindowClosed()) {
+            throw new WindowClosedException();
+        }
+        if (!adaptive) {
+            return;
+        }
+        long start = System.nanoTime();
+        double current = getLoad();
+        while (current >= 1) {
+            LOGGER.log(Level.FINER, "Pausing the maintenance, load is " + current);
+            long left = windowEnd - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new WindowClosedException();
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(PAUSE_INTERVAL, left));
+            current = getLoad();
+        }
+        long delay = getDelay(current);
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+        if (metrics != null && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(1)) {
+            metrics.record(SweepMetrics.Phase.PACING, start);
+        }
+    }
+
+    /**
+     * Gets how long an action is delayed under the given load, lower than 1.
+     */
+    static long getDelay(double load) {
+        return load <= 0.5 ? 0 : (long) ((load - 0.5) * 2 * MAX_SLOW_DOWN);
+    }
+
+    private synchronized double getLoad() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastSample >= SAMPLE_INTERVAL) {
+            load = getLoad(busyExecutorsPercent > 0 ? getExecutorsPercent() : 0,
+                    busyQueueLength > 0 ? getQueueLength() : 0, busyDiskMillis > 0 ? probeDisk() : 0);
+            lastSample = now;
+        }
+        return load;
+    }
+
+    /**
+     * Gets the highest ratio of the given measures to their threshold, 1 or more meaning busy.
+     */
+    double getLoad(double executorsPercent, int queueLength, long diskMillis) {
+        double highest = 0;
+        if (busyExecutorsPercent > 0) {
+            highest = Math.max(highest, executorsPercent / busyExecutorsPercent);
+        }
+        if (busyQueueLength > 0) {
+            highest = Math.max(highest, (double) queueLength / busyQueueLength);
+        }
+        if (busyDiskMillis > 0) {
+            highest = Math.max(highest, (double) diskMillis / busyDiskMillis);
+        }
+        return highest;
+    }
+
+    double getExecutorsPercent() {
+        int busy = 0;
+        int total = 0;
+        for (Computer computer : Jenkins.getInstance().getComputers()) {
+            if (computer.isOnline()) {
+                busy += computer.countBusy();
+                total += computer.countExecutors();
+            }
+        }
+        return total == 0 ? 0 : 100.0 * busy / total;
+    }
+
+    int getQueueLength() {
+        return Jenkins.getInstance().getQueue().getBuildableItems().size();
+    }
+
+    /**
+     * Times a small write synced to the disk holding the configuration of the jobs.
+     *
+     * @return the duration in milliseconds.
+     */
+    long probeDisk() throws IOException {
+        File dir = LastBuildIndex.getPluginRootDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        long start = System.nanoTime();
+        RandomAccessFile probe = new RandomAccessFile(new File(dir, "pacing.probe"), "rw");
+        try {
+            probe.write(new byte[PROBE_SIZE]);
+            probe.getChannel().force(false);
+        } finally {
+            probe.close();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+import net.sf.json.util.JSONUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes what the maintenance would do with each job, without changing anything.
+ *
+ * Jobs are evaluated and written one at a time while walking the item tree, one page at a time,
+ * so neither the list of jobs nor the report is ever held in memory.
+ *
+ * @author Victor Martinez
+ */
+final class SweepPreview {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    /**
+     * Output formats of the preview.
+     */
+    enum Format {
+        CSV("text/csv;charset=UTF-8") {
+            @Override
+            void begin(Writer out, int start) throws IOException {
+                out.write("job,lastBuild,idleDays,decision\n");
+            }
+
+            @Override
+            void row(Writer out, boolean first, String job, Long lastBuild, Long idleDays, SweepDecision decision) throws IOException {
+                out.write(StringEscapeUtils.escapeCsv(job) + "," + nullToEmpty(lastBuild) + "," + nullToEmpty(idleDays) + "," + decision.name() + "\n");
+            }
+
+            @Override
+            void end(Writer out, int next) throws IOException {
+                // an empty page tells the client there are no more jobs
+            }
+        },
+        JSON("application/json;charset=UTF-8") {
+            @Override
+            void begin(Writer out, int start) throws IOException {
+                out.write("{\"start\":" + start + ",\"jobs\":[");
+            }
+
+            @Override
+            void row(Writer out, boolean first, String job, Long lastBuild, Long idleDays, SweepDecision decision) throws IOException {
+                out.write((first ? "" : ",") + "{\"job\":" + JSONUtils.quote(job) + ",\"lastBuild\":" + lastBuild +
+                        ",\"idleDays\":" + idleDays + ",\"decision\":\"" + decision.name() +
+                        "\",\"description\":" + JSONUtils.quote(decision.getDescription()) + "}");
+            }
+
+            @Override
+            void end(Writer out, int next) throws IOException {
+                out.write("],\"next\":" + (next < 0 ? "null" : String.valueOf(next)) + "}");
+            }
+        };
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        abstract void begin(Writer out, int start) throws IOException;
+
+        abstract void row(Writer out, boolean first, String job, Long lastBuild, Long idleDays, SweepDecision decision) throws IOException;
+
+        abstract void end(Writer out, int next) throws IOException;
+
+        private static String nullToEmpty(Long value) {
+            return value == null ? "" : value.toString();
+        }
+    }
+
+    private final SweepCriteria criteria;
+    private final LastBuildIndex index = LastBuildIndex.get();
+    private final long now = System.currentTimeMillis();
+
+    SweepPreview(SweepCriteria criteria) {
+        this.criteria = criteria;
+        criteria.setScorer(new StalenessScorer());
+    }
+
+    /**
+     * Writes a page of the preview.
+     *
+     * @param start
+     *            position of the first job of the page, in the order of the item tree.
+     * @param limit
+     *            maximum number of jobs in the page.
+     * @param deadline
+     *            time after which the page is cut short, once it has at least one job.
+     * @return the position of the first job of the next page, or -1 if there are no more jobs.
+     */
+    int write(Writer out, Format format, int start, int limit, long deadline) throws IOException {
+        format.begin(out, start);
+        int position = 0;
+        int written = 0;
+        int next = -1;
+        for (Job<?, ?> job : new JobTraversal(Jenkins.getInstance())) {
+            if (position++ < start) {
+                continue;
+            }
+            if (written == limit || (written > 0 && System.currentTimeMillis() > deadline)) {
+                next = position - 1;
+                break;
+            }
+            Long lastBuild = index.getLastBuild(job);
+            Long idleDays = lastBuild == null ? null : TimeUnit.MILLISECONDS.toDays(now - lastBuild);
+            SweepDecision decision = criteria.evaluate(job, lastBuild, DisableableAdapter.of(job));
+            format.row(out, written == 0, job.getFullName(), lastBuild, idleDays, decision);
+            written++;
+        }
+        format.end(out, next);
+        out.flush();
+        return next;
+    }
+}
@@ -0,0 +1,274 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import net.sf.json.util.JSONUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.jenkinsci.plugins.Messages;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary report of a sweep: one row per evaluated job with its last build time, the decision, the policy
+ * behind it and the time the action took.
+ *
+ * Each run writes two files named after its run ID. The data file starts with a header naming the decisions,
+ * followed by length prefixed rows:
+ * <pre>
+ * int length, short+UTF-8 job, long lastBuild (-1 if none), byte decision (-1 if failed),
+ * short+UTF-8 policy, long duration (microseconds)
+ * </pre>
+ * The index file holds the offset of each row as a long, so a page of rows is read by mapping the matching
+ * slices of both files, without loading the rest of the report. Only the reports of the last runs are kept.
+ *
+ * @author Victor Martinez
+ */
+final class SweepReport {
+
+    private static final Logger LOGGER = Logger.getLogger(SweepReport.class.getName());
+
+    private static final int MAGIC = 0x4d4a5352;
+    private static final byte VERSION = 1;
+    private static final String DATA = ".dat";
+    private static final String INDEX = ".idx";
+    private static final byte FAILED = -1;
+
+    static final int DEFAULT_LIMIT = 1000;
+    static final int MAX_LIMIT = 10000;
+
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    private long position;
+
+    private SweepReport(File dir, String runId) throws IOException {
+        this.data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, runId + DATA))));
+        this.index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, runId + INDEX))));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        SweepDecision[] decisions = SweepDecision.values();
+        data.writeByte(decisions.length);
+        for (SweepDecision decision : decisions) {
+            writeString(data, decision.name());
+        }
+        position = data.size();
+    }
+
+    static File getDir() {
+        return new File(LastBuildIndex.getPluginRootDir(), "reports");
+    }
+
+    /**
+     * Starts the report of a new run, deleting the oldest ones.
+     *
+     * @param retained
+     *            number of reports kept, this one included.
+     */
+    static SweepReport start(File dir, String runId, int retained) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        List<String> runs = getRuns(dir);
+        for (String run : runs.subList(Math.min(runs.size(), Math.max(0, retained - 1)), runs.size())) {
+            for (String extension : Arrays.asList(INDEX, DATA)) {
+                File file = new File(dir, run + extension);
+                if (!file.delete()) {
+                    LOGGER.log(Level.WARNING, "Unable to delete " + file);
+                }
+            }
+        }
+        return new SweepReport(dir, runId);
+    }
+
+    /**
+     * Gets the IDs of the runs with a report, the most recent first.
+     */
+    static List<String> getRuns(File dir) {
+        String[] names = dir.list();
+        List<String> runs = new ArrayList<String>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (int i = names.length - 1; i >= 0; i--) {
+                if (names[i].endsWith(INDEX)) {
+                    runs.add(names[i].substring(0, names[i].length() - INDEX.length()));
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Records what was done with a job.
+     *
+     * @param lastBuild
+     *            the time of the last build of the job, null if it doesn't have any builds yet.
+     * @param decision
+     *            the decision, null if the job couldn't be processed.
+     * @param policy
+     *            the policy behind the decision, null if there is none.
+     * @param duration
+     *            the time the action took, in nanoseconds.
+     */
+    synchronized void add(String job, Long lastBuild, SweepDecision decision, String policy, long duration) throws IOException {
+        byte[] name = toBytes(job);
+        byte[] by = toBytes(policy == null ? "" : policy);
+        int length = 2 + name.length + 8 + 1 + 2 + by.length + 8;
+        index.writeLong(position);
+        data.writeInt(length);
+        writeBytes(data, name);
+        data.writeLong(lastBuild == null ? -1 : lastBuild);
+        data.writeByte(decision == null ? FAILED : decision.ordinal());
+        writeBytes(data, by);
+        data.writeLong(duration / 1000);
+        position += 4 + length;
+    }
+
+    synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    static boolean exists(File dir, String runId) {
+        // IDs come from the request, they must not point out of the directory
+        return runId != null && runId.matches("[0-9A-Za-z_.-]+") && new File(dir, runId + INDEX).isFile();
+    }
+
+    /**
+     * Writes a page of the report of the given run.
+     *
+     * @param start
+     *            position of the first row of the page.
+     * @param limit
+     *            maximum number of rows in the page.
+     * @return the position of the first row of the next page, or -1 if there are no more rows.
+     */
+    static int write(File dir, String runId, Writer out, boolean csv, int start, int limit) throws IOException {
+        if (!exists(dir, runId)) {
+            throw new IOException("No such report [" + runId + "]");
+        }
+        File dataFile = new File(dir, runId + DATA);
+        String[] decisions = readDecisions(dataFile);
+        RandomAccessFile indexIn = new RandomAccessFile(new File(dir, runId + INDEX), "r");
+        RandomAccessFile dataIn = new RandomAccessFile(dataFile, "r");
+        try {
+            FileChannel offsets = indexIn.getChannel();
+            // a report being written may end with a partial row
+            long total = offsets.size() / 8;
+            int count = (int) Math.max(0, Math.min(limit, total - start));
+            long dataSize = dataIn.getChannel().size();
+            long from = 0;
+            long to = 0;
+            if (count > 0) {
+                // the offsets of the rows of the page, and of the row after it if any
+                int bounds = (int) Math.min(count + 1, total - start);
+                MappedByteBuffer page = offsets.map(FileChannel.MapMode.READ_ONLY, start * 8L, bounds * 8L);
+                from = page.getLong(0);
+                to = bounds > count ? page.getLong(count * 8) : dataSize;
+            }
+            MappedByteBuffer rows = dataIn.getChannel().map(FileChannel.MapMode.READ_ONLY, from, Math.max(0, Math.min(to, dataSize) - from));
+            out.write(csv ? "job,lastBuild,decision,description,policy,durationMicros\n" : "{\"start\":" + start + ",\"jobs\":[");
+            int written = 0;
+            while (written < count && rows.remaining() >= 4) {
+                int length = rows.getInt();
+                if (rows.remaining() < length) {
+                    break;
+                }
+                String job = readString(rows);
+                long lastBuild = rows.getLong();
+                byte ordinal = rows.get();
+                String policy = readString(rows);
+                long duration = rows.getLong();
+                String decision = ordinal == FAILED || ordinal >= decisions.length ? SweepJournal.FAILED : decisions[ordinal];
+                String description = getDescription(decision);
+                if (csv) {
+                    out.write(StringEscapeUtils.escapeCsv(job) + "," + (lastBuild < 0 ? "" : String.valueOf(lastBuild)) + "," + decision
+                            + "," + StringEscapeUtils.escapeCsv(description) + "," + StringEscapeUtils.escapeCsv(policy) + "," + duration + "\n");
+                } else {
+                    out.write((written == 0 ? "" : ",") + "{\"job\":" + JSONUtils.quote(job) + ",\"lastBuild\":"
+                            + (lastBuild < 0 ? "null" : String.valueOf(lastBuild)) + ",\"decision\":\"" + decision
+                            + "\",\"description\":" + JSONUtils.quote(description) + ",\"policy\":" + JSONUtils.quote(policy)
+                            + ",\"durationMicros\":" + duration + "}");
+                }
+                written++;
+            }
+            int next = start + written < total ? start + written : -1;
+            if (!csv) {
+                out.write("],\"next\":" + (next < 0 ? "null" : String.valueOf(next)) + "}");
+            }
+            out.flush();
+            return next;
+        } finally {
+            try {
+                dataIn.close();
+            } finally {
+                indexIn.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the names of the decisions from the header, the decisions may have changed since the report was written.
+     */
+    private static String[] readDecisions(File dataFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(dataFile));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Unsupported report " + dataFile);
+            }
+            String[] decisions = new String[in.readUnsignedByte()];
+            for (int i = 0; i < decisions.length; i++) {
+                byte[] bytes = new byte[in.readUnsignedShort()];
+                in.readFully(bytes);
+                decisions[i] = new String(bytes, "UTF-8");
+            }
+            return decisions;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String getDescription(String decision) {
+        try {
+            return SweepDecision.valueOf(decision).getDescription();
+        } catch (IllegalArgumentException e) {
+            return SweepJournal.FAILED.equals(decision) ? Messages.decision_failed() : "";
+        }
+    }
+
+    private static byte[] toBytes(String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        // job names are far shorter than that
+        return bytes.length <= 0xffff ? bytes : Arrays.copyOf(bytes, 0xffff);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, toBytes(value));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
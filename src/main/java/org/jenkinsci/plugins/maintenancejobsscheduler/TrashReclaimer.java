@@ -0,0 +1,246 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Removes jobs by moving their directory into a trash area, and deletes the trash in the background.
+ *
+ * The removed job goes away as soon as its directory is renamed, the files are then deleted at
+ * the pace configured in {@link GlobalPluginConfiguration}, so that running builds don't compete
+ * with the sweep for disk I/O. Anything left over by a restart is picked up by the next run.
+ *
+ * On a shared storage, the instance reclaiming the trash holds a lease, renewed as the deletions go,
+ * and stops as soon as another instance took it over.
+ *
+ * @author Victor Martinez
+ */
+@Extension
+public class TrashReclaimer extends AsyncPeriodicWork {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final String LEASE = "reclaim";
+
+    /**
+     * Thrown when another instance took the lease over while the trash was being reclaimed.
+     */
+    static final class LeaseLostException extends IOException {
+        LeaseLostException() {
+            super("Another instance took the lease over");
+        }
+    }
+
+    public TrashReclaimer() {
+        super("MaintenanceJobsScheduler trash reclaimer");
+    }
+
+    /**
+     * Gets this extension's instance.
+     *
+     * @return the instance of this extension.
+     */
+    public static TrashReclaimer get() {
+        return Jenkins.getInstance().getExtensionList(TrashReclaimer.class).get(0);
+    }
+
+    /**
+     * Gets the directory holding the directories of the removed jobs until they are deleted.
+     */
+    static File getTrashDir() {
+        return new File(LastBuildIndex.getPluginRootDir(), "trash");
+    }
+
+    /**
+     * Removes the given job, leaving its files to be deleted later on.
+     *
+     * The job is deleted right away if its directory can't be moved, e.g. when the trash lives
+     * on another file system.
+     */
+    public void delete(Job<?, ?> job) throws IOException, InterruptedException {
+        File dir = job.getRootDir();
+        File trash = getTrashDir();
+        File target = new File(trash, System.currentTimeMillis() + "-" + SEQUENCE.incrementAndGet() + "-" + job.getName());
+        if (!(trash.isDirectory() || trash.mkdirs()) || !dir.renameTo(target)) {
+            logger.log(Level.FINE, "Unable to move " + dir + " to " + target + ", deleting it right away");
+            job.delete();
+            return;
+        }
+        boolean deleted = false;
+        try {
+            // there is nothing left to delete, so this only unregisters the job
+            job.delete();
+            deleted = true;
+        } finally {
+            if (!deleted && !dir.exists() && !target.renameTo(dir)) {
+                logger.log(Level.WARNING, "Unable to move " + target + " back to " + dir);
+            }
+        }
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return MIN;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        String[] entries = getTrashDir().list();
+        if (entries == null || entries.length == 0) {
+            return;
+        }
+        SharedStorageCoordinator coordinator = SharedStorageCoordinator.get();
+        long duration = SharedStorageCoordinator.getLeaseDuration();
+        if (!coordinator.acquireLease(LEASE, duration)) {
+            listener.getLogger().println("Another instance is reclaiming the trash of the shared storage");
+            return;
+        }
+        long reclaimed;
+        boolean held = true;
+        try {
+            reclaimed = reclaim(new Lease(coordinator, duration));
+        } catch (LeaseLostException e) {
+            held = false;
+            listener.getLogger().println("Another instance took over reclaiming the trash of the shared storage");
+            return;
+        } finally {
+            if (held) {
+                coordinator.releaseLease(LEASE);
+            }
+        }
+        if (reclaimed > 0) {
+            listener.getLogger().println("Reclaimed " + reclaimed + " bytes");
+        }
+    }
+
+    /**
+     * Deletes everything in the trash.
+     *
+     * @return the number of bytes freed.
+     */
+    long reclaim() throws IOException, InterruptedException {
+        return reclaim(null);
+    }
+
+    /**
+     * Deletes everything in the trash, renewing the given lease as it goes.
+     *
+     * @param lease
+     *            the lease held while reclaiming, null if there is none.
+     * @return the number of bytes freed.
+     * @throws LeaseLostException
+     *             if the lease couldn't be renewed, the rest of the trash being left to its new holder.
+     */
+    long reclaim(Lease lease) throws IOException, InterruptedException {
+        File[] entries = getTrashDir().listFiles();
+        if (entries == null || entries.length == 0) {
+            return 0;
+        }
+        GlobalPluginConfiguration conf = GlobalPluginConfiguration.get();
+        Pacer pacer = new Pacer(conf.getReclaimFilesPerSecond(), conf.getReclaimMegabytesPerSecond() * 1024L * 1024L);
+        SweepMetrics metrics = SweepMetrics.get();
+        long start = System.nanoTime();
+        try {
+            for (File entry : entries) {
+                reclaim(entry, lease, pacer, metrics);
+            }
+        } finally {
+            metrics.record(SweepMetrics.Phase.RECLAIM, start);
+        }
+        return pacer.bytes;
+    }
+
+    private void reclaim(File file, Lease lease, Pacer pacer, SweepMetrics metrics) throws IOException, InterruptedException {
+        // never follow the symbolic links of the build directories out of the trash
+        boolean link = Util.isSymlink(file);
+        if (!link && file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    reclaim(child, lease, pacer, metrics);
+                }
+            }
+        }
+        if (lease != null) {
+            lease.renew();
+        }
+        long length = !link && file.isFile() ? file.length() : 0;
+        Util.deleteFile(file);
+        metrics.add(SweepMetrics.Counter.RECLAIMED_BYTES, length);
+        pacer.deleted(length);
+    }
+
+    /**
+     * The lease held while reclaiming the trash, renewed once a third of its duration has passed.
+     */
+    static final class Lease {
+
+        private final SharedStorageCoordinator coordinator;
+        private final long duration;
+        private long renewed = System.currentTimeMillis();
+
+        Lease(SharedStorageCoordinator coordinator, long duration) {
+            this.coordinator = coordinator;
+            this.duration = duration;
+        }
+
+        void renew() throws IOException {
+            long now = System.currentTimeMillis();
+            if (now - renewed < duration / 3) {
+                return;
+            }
+            if (!coordinator.acquireLease(LEASE, duration)) {
+                throw new LeaseLostException();
+            }
+            renewed = now;
+        }
+    }
+
+    /**
+     * Sleeps as needed to keep the deletions under the given rates.
+     */
+    private static final class Pacer {
+
+        private final long filesPerSecond;
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long files;
+        private long bytes;
+
+        /**
+         * @param filesPerSecond
+         *            maximum number of deleted files per second, 0 or lower means unlimited.
+         * @param bytesPerSecond
+         *            maximum number of freed bytes per second, 0 or lower means unlimited.
+         */
+        Pacer(long filesPerSecond, long bytesPerSecond) {
+            this.filesPerSecond = filesPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void deleted(long length) throws InterruptedException {
+            files++;
+            bytes += length;
+            long due = 0;
+            if (filesPerSecond > 0) {
+                due = TimeUnit.SECONDS.toNanos(files) / filesPerSecond;
+            }
+            if (bytesPerSecond > 0) {
+                due = Math.max(due, (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond));
+            }
+            long wait = due - (System.nanoTime() - start);
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
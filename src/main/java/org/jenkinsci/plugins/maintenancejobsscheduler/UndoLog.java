@@ -0,0 +1,252 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.BulkChange;
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Jobs disabled by a sweep, along with their description before it was changed, so that the sweep can be undone.
+ *
+ * Each sweep writes a file of its own, named after its run ID, with one line per disabled job: its full name
+ * and its escaped original description, separated by a tab. Only the files of the last runs that disabled jobs
+ * and haven't been undone are kept, along with the undone ones in between.
+ *
+ * @author Victor Martinez
+ */
+final class UndoLog {
+
+    private static final Logger LOGGER = Logger.getLogger(UndoLog.class.getName());
+
+    private static final String EXTENSION = ".log";
+    private static final String UNDONE = ".undone";
+    static final int RETAINED_RUNS = 20;
+
+    private final File file;
+    private final Writer writer;
+    private int records = 0;
+
+    private UndoLog(File file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+    }
+
+    static File getDir() {
+        return new File(LastBuildIndex.getPluginRootDir(), "undo");
+    }
+
+    /**
+     * Starts the log of a new run.
+     */
+    static UndoLog start(String runId) throws IOException {
+        File dir = getDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        return new UndoLog(new File(dir, runId + EXTENSION));
+    }
+
+    /**
+     * Deletes the logs older than the last {@link #RETAINED_RUNS} runs that can be undone, undone ones included.
+     */
+    static void prune(File dir) {
+        List<String> runs = getRuns(dir);
+        if (runs.size() <= RETAINED_RUNS) {
+            return;
+        }
+        long oldest = Long.parseLong(runs.get(RETAINED_RUNS - 1));
+        String[] names = dir.list();
+        for (String name : names == null ? new String[0] : names) {
+            int dot = name.indexOf('.');
+            try {
+                if (dot > 0 && Long.parseLong(name.substring(0, dot)) < oldest && !new File(dir, name).delete()) {
+                    LOGGER.log(Level.WARNING, "Unable to delete " + name + " from " + dir);
+                }
+            } catch (NumberFormatException e) {
+                // not a log of this class
+            }
+        }
+    }
+
+    /**
+     * Gets the IDs of the runs that can be undone, the most recent first.
+     */
+    static List<String> getRuns() {
+        return getRuns(getDir());
+    }
+
+    static List<String> getRuns(File dir) {
+        String[] names = dir.list();
+        List<String> runs = new ArrayList<String>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (int i = names.length - 1; i >= 0; i--) {
+                if (names[i].endsWith(EXTENSION)) {
+                    runs.add(names[i].substring(0, names[i].length() - EXTENSION.length()));
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Records a job disabled by this run.
+     *
+     * @param description
+     *            the description of the job before it was changed.
+     */
+    synchronized void record(String fullName, String description) throws IOException {
+        writer.write(fullName + "\t" + escape(description == null ? "" : description) + "\n");
+        records++;
+    }
+
+    /**
+     * Closes the log, which is deleted if the run didn't disable any job. Otherwise the oldest logs are deleted.
+     */
+    synchronized void close() throws IOException {
+        writer.close();
+        if (records == 0) {
+            if (!file.delete()) {
+                LOGGER.log(Level.FINE, "Unable to delete " + file);
+            }
+        } else {
+            prune(file.getParentFile());
+        }
+    }
+
+    /**
+     * Gets the jobs disabled by the given run.
+     *
+     * @return the original description of each job, by full name.
+     */
+    static Map<String, String> read(String runId) throws IOException {
+        File file = getFile(runId);
+        Map<String, String> jobs = new LinkedHashMap<String, String>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    jobs.put(line.substring(0, tab), unescape(line.substring(tab + 1)));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return jobs;
+    }
+
+    /**
+     * Enables the jobs disabled by the given run and gives them their original description back.
+     *
+     * The jobs are looked up by name, and those enabled since are left alone.
+     *
+     * @return the number of enabled jobs.
+     */
+    static int undo(String runId, SweepExecutor executor) throws IOException, InterruptedException {
+        Map<String, String> jobs = read(runId);
+        final AtomicInteger enabled = new AtomicInteger();
+        for (final Map.Entry<String, String> entry : jobs.entrySet()) {
+            final Job<?, ?> job = Jenkins.getInstance().getItemByFullName(entry.getKey(), Job.class);
+            final DisableableAdapter adapter = job == null ? null : DisableableAdapter.of(job);
+            if (adapter == null) {
+                continue;
+            }
+            executor.submit(entry.getKey(), new SweepExecutor.Task() {
+                public void run() throws IOException {
+                    if (!adapter.isDisabled(job)) {
+                        return;
+                    }
+                    BulkChange bc = new BulkChange(job);
+                    try {
+                        adapter.setDisabled(job, false);
+                        job.setDescription(entry.getValue());
+                        StalenessSignal.ConfigChangeSignal.beginMaintenance();
+                        try {
+                            bc.commit();
+                        } finally {
+                            StalenessSignal.ConfigChangeSignal.endMaintenance();
+                        }
+                    } finally {
+                        bc.abort();
+                    }
+                    enabled.incrementAndGet();
+                }
+            });
+        }
+        executor.await();
+        File file = getFile(runId);
+        if (!file.renameTo(new File(file.getParentFile(), file.getName() + UNDONE))) {
+            LOGGER.log(Level.WARNING, "Unable to mark " + file + " as undone");
+        }
+        return enabled.get();
+    }
+
+    private static File getFile(String runId) throws IOException {
+        // IDs come from the request, they must not point out of the directory
+        if (runId == null || !runId.matches("[0-9A-Za-z_.-]+")) {
+            throw new IOException("Invalid run ID [" + runId + "]");
+        }
+        File file = new File(getDir(), runId + EXTENSION);
+        if (!file.isFile()) {
+            throw new IOException("No such run [" + runId + "]");
+        }
+        return file;
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            unescaped.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+        }
+        return unescaped.toString();
+    }
+}
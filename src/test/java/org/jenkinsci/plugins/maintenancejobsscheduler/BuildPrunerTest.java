@@ -0,0 +1,112 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class BuildPrunerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void testPrunesByAge() throws Exception {
+        File builds = folder.newFolder("builds");
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            build(builds, i, now - (10 - i) * DAY);
+        }
+        new File(builds, "lastSuccessfulBuild").mkdir();
+        // builds 1 to 3 are older than 6 days
+        assertEquals(Arrays.asList("1", "2", "3"), names(new BuildPruner(now - 6 * DAY, 0).getCandidates(builds)));
+    }
+
+    @Test
+    public void testPrunesByCount() throws Exception {
+        File builds = folder.newFolder("builds");
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            build(builds, i, now - (10 - i) * DAY);
+        }
+        // every build is old enough
+        assertEquals(Arrays.asList("1", "2", "3"), names(new BuildPruner(now, 2).getCandidates(builds)));
+    }
+
+    @Test
+    public void testKeepsTheBuildsBeyondTheNumberUntilTheyAreOldEnough() throws Exception {
+        File builds = folder.newFolder("builds");
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            build(builds, i, now - (10 - i) * DAY);
+        }
+        // builds 1 to 4 are beyond the one kept, but build 4 is only 6 days old
+        assertEquals(Arrays.asList("1", "2", "3"), names(new BuildPruner(now - 6 * DAY - 1, 1).getCandidates(builds)));
+        assertTrue(new BuildPruner(0, 1).getCandidates(builds).isEmpty());
+    }
+
+    @Test
+    public void testKeepsTheMostRecentBuildsWhateverTheirAge() throws Exception {
+        File builds = folder.newFolder("builds");
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            build(builds, i, now - (10 - i) * DAY);
+        }
+        // builds 1 to 3 are older than 6 days, but only build 1 is beyond the 4 kept
+        assertEquals(Arrays.asList("1"), names(new BuildPruner(now - 6 * DAY, 4).getCandidates(builds)));
+        assertEquals(Arrays.asList("1", "2", "3"), names(new BuildPruner(now - 6 * DAY, 2).getCandidates(builds)));
+    }
+
+    @Test
+    public void testKeepsLastBuild() throws Exception {
+        File builds = folder.newFolder("builds");
+        build(builds, 1, 1000);
+        assertTrue(new BuildPruner(Long.MAX_VALUE, 0).getCandidates(builds).isEmpty());
+    }
+
+    @Test
+    public void testReadsIdsOfOlderLayout() throws Exception {
+        File builds = folder.newFolder("builds");
+        new File(builds, "2014-01-01_10-00-00").mkdir();
+        new File(builds, "2014-06-01_10-00-00").mkdir();
+        new File(builds, "2015-01-01_10-00-00").mkdir();
+        assertEquals(Arrays.asList("2014-01-01_10-00-00", "2014-06-01_10-00-00"),
+                names(new BuildPruner(System.currentTimeMillis(), 0).getCandidates(builds)));
+    }
+
+    private static void build(File builds, int number, long timestamp) throws IOException {
+        File dir = new File(builds, String.valueOf(number));
+        dir.mkdir();
+        FileOutputStream out = new FileOutputStream(new File(dir, "build.xml"));
+        try {
+            out.write(("<?xml version='1.0' encoding='UTF-8'?>\n<build>\n  <actions>\n    <timestamp>1</timestamp>\n" +
+                    "  </actions>\n  <number>" + number + "</number>\n  <timestamp>" + timestamp + "</timestamp>\n</build>\n")
+                    .getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static List<String> names(List<BuildPruner.BuildDir> dirs) {
+        List<String> names = new ArrayList<String>();
+        for (BuildPruner.BuildDir dir : dirs) {
+            names.add(dir.getName());
+        }
+        return names;
+    }
+}
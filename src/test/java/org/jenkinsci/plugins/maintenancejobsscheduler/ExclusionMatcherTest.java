@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class ExclusionMatcherTest {
+
+    @Test
+    public void testWithoutRules() {
+        ExclusionMatcher matcher = ExclusionMatcher.of("");
+        assertTrue(matcher.isValid());
+        assertFalse(matcher.matches("project1"));
+        assertFalse(ExclusionMatcher.of(null).matches("project1"));
+    }
+
+    @Test
+    public void testLiteralsPrefixesAndSuffixes() {
+        ExclusionMatcher matcher = ExclusionMatcher.of("project1\n^maintenance.*\n.*-deploy\r\n");
+        assertTrue(matcher.matches("project1"));
+        assertFalse(matcher.matches("project10"));
+        assertTrue(matcher.matches("maintenance-nightly"));
+        assertFalse(matcher.matches("my-maintenance"));
+        assertTrue(matcher.matches("app-deploy"));
+        assertFalse(matcher.matches("app-deploy-test"));
+    }
+
+    @Test
+    public void testRegularExpressions() {
+        ExclusionMatcher matcher = ExclusionMatcher.of(".*1$\nfeature-[0-9]+\n(a)\\1");
+        assertTrue(matcher.matches("project1"));
+        assertFalse(matcher.matches("project2"));
+        assertTrue(matcher.matches("feature-42"));
+        assertFalse(matcher.matches("feature-x"));
+        assertTrue(matcher.matches("aa"));
+        assertFalse(matcher.matches("ab"));
+    }
+
+    @Test
+    public void testInvalidRegularExpressionExcludesEverything() {
+        ExclusionMatcher matcher = ExclusionMatcher.of("project1\n+*wrongregexp(])");
+        assertFalse(matcher.isValid());
+        assertEquals(1, matcher.getErrors().size());
+        assertTrue(matcher.matches("project2"));
+    }
+
+    @Test
+    public void testCompiledOncePerPolicy() {
+        MaintenancePolicy policy = new MaintenancePolicy("nightly", "", 30, "team/.*", ".*-deploy", MaintenanceAction.DISABLE);
+        assertSame(policy.getExcludedJobsMatcher(), policy.getExcludedJobsMatcher());
+        assertSame(policy.getIncludedJobsMatcher(), policy.getIncludedJobsMatcher());
+        // validating the same rules compiles them again, apart from those of the policy
+        assertNotSame(policy.getExcludedJobsMatcher(), ExclusionMatcher.of(".*-deploy"));
+    }
+
+    @Test
+    public void testCountsEachJobOnce() {
+        ExclusionMatcher matcher = ExclusionMatcher.of("project1\nteam/.*\n.*-deploy\n.*1");
+        String[] names = {"app-deploy", "project1", "project2", "team/app-deploy", "team/project1"};
+
+        ExclusionMatcher.Counts counts = matcher.count(names, Long.MAX_VALUE);
+        assertTrue(counts.isComplete());
+        assertEquals(4, counts.getTotal());
+        assertEquals(1, counts.getCount(0));
+        assertEquals(2, counts.getCount(1));
+        assertEquals(2, counts.getCount(2));
+        assertEquals(2, counts.getCount(3));
+    }
+}
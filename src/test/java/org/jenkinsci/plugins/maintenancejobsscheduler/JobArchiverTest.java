@@ -0,0 +1,58 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Victor Martinez
+ */
+public class JobArchiverTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testArchivesAndRestores() throws Exception {
+        GlobalPluginConfiguration.get().setArchiveDirectory(folder.getRoot().getAbsolutePath());
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        j.buildAndAssertSuccess(project);
+        j.buildAndAssertSuccess(project);
+
+        File archive = JobArchiver.get().archive(project);
+        assertTrue(archive.isFile());
+        assertEquals(1, JobArchiver.get().list().size());
+        TrashReclaimer.get().delete(project);
+        assertNull(j.jenkins.getItem("project1"));
+
+        Item restored = JobArchiver.get().restore(archive.getName());
+        assertEquals("project1", restored.getFullName());
+        FreeStyleProject loaded = j.jenkins.getItemByFullName("project1", FreeStyleProject.class);
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getLastBuild().getNumber());
+        // not taken for a job without builds by the next sweep
+        assertEquals(Long.valueOf(loaded.getLastBuild().getTimeInMillis()), LastBuildIndex.get().getLastBuild("project1"));
+
+        try {
+            JobArchiver.get().restore(archive.getName());
+            fail("the job already exists");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Victor Martinez
+ */
+public class JobDisablerTest {
+
+    private static final String PREFIX = "Disabled automatically";
+
+    @Test
+    public void testStripsEarlierPrefixes() {
+        assertEquals("", JobDisabler.stripPrefix(null, PREFIX));
+        assertEquals("my job", JobDisabler.stripPrefix("my job", PREFIX));
+        assertEquals("my job", JobDisabler.stripPrefix(PREFIX + " 'Mon Jan 05 2015'\nmy job", PREFIX));
+        assertEquals("my job", JobDisabler.stripPrefix(PREFIX + " 'Tue'\n" + PREFIX + " 'Mon'\nmy job", PREFIX));
+        // not one of ours
+        assertEquals(PREFIX + " 'unterminated", JobDisabler.stripPrefix(PREFIX + " 'unterminated", PREFIX));
+    }
+}
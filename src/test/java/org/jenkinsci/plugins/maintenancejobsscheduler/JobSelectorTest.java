@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.jenkinsci.plugins.maintenancejobsscheduler.JobAttributeIndex.Attribute;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class JobSelectorTest {
+
+    private static final Set<String> ALL = new HashSet<String>(Arrays.asList("a", "b", "c", "d"));
+
+    private final FixedIndex index = new FixedIndex()
+            .with(Attribute.LABEL, "linux", "a", "b")
+            .with(Attribute.LABEL, "windows", "c")
+            .with(Attribute.VIEW, "Nightly", "b", "c", "d")
+            .with(Attribute.RESULT, "FAILURE", "b");
+
+    @Test
+    public void testEmptySelectorIsEmpty() {
+        assertTrue(JobSelector.of(null).isEmpty());
+        assertTrue(JobSelector.of(" \n ").isEmpty());
+    }
+
+    @Test
+    public void testSameKeyIsOredOtherKeysAreAnded() {
+        JobSelector.Selection selection = JobSelector.of("label:linux\nlabel:windows\nview:Nightly").resolve(index);
+        assertFalse(selection.matches("a"));
+        assertTrue(selection.matches("b"));
+        assertTrue(selection.matches("c"));
+        assertFalse(selection.matches("d"));
+    }
+
+    @Test
+    public void testExclusions() {
+        JobSelector.Selection selection = JobSelector.of("view:Nightly\n!result:failure").resolve(index);
+        assertEquals(2, selection.count(ALL));
+        assertFalse(selection.matches("b"));
+
+        selection = JobSelector.of("!label:linux").resolve(index);
+        assertEquals(2, selection.count(ALL));
+        assertTrue(selection.matches("e"));
+    }
+
+    @Test
+    public void testInvalidSelectorSelectsNothing() {
+        JobSelector selector = JobSelector.of("label:linux\ncolor:blue\nview");
+        assertFalse(selector.isValid());
+        assertEquals(2, selector.getErrors().size());
+        assertEquals(0, selector.resolve(index).count(ALL));
+    }
+
+    private static final class FixedIndex implements JobSelector.Index {
+        private final Map<String, Set<String>> jobs = new HashMap<String, Set<String>>();
+
+        FixedIndex with(Attribute attribute, String value, String... names) {
+            jobs.put(attribute.getKey() + ":" + value, new HashSet<String>(Arrays.asList(names)));
+            return this;
+        }
+
+        public Set<String> getJobs(Attribute attribute, String value) {
+            Set<String> names = jobs.get(attribute.getKey() + ":" + value);
+            return names == null ? new HashSet<String>() : new HashSet<String>(names);
+        }
+    }
+}
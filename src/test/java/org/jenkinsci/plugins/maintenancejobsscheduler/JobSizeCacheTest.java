@@ -0,0 +1,34 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class JobSizeCacheTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testKeepsSizesUpToDate() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        JobSizeCache cache = JobSizeCache.get();
+        long empty = cache.getSize(project);
+        assertEquals(JobSizeCache.sizeOf(project.getRootDir()), empty);
+
+        j.buildAndAssertSuccess(project);
+        long built = cache.getSize(project);
+        // the completed build is added, without measuring the job again
+        assertTrue(built > empty);
+
+        project.getLastBuild().delete();
+        assertEquals(JobSizeCache.sizeOf(project.getRootDir()), cache.getSize(project));
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Victor Martinez
+ */
+public class LastBuildIndexTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testRecordsBuilds() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        assertNull(LastBuildIndex.get().getLastBuild(project));
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(project);
+        assertEquals(Long.valueOf(build.getTimeInMillis()), LastBuildIndex.get().getLastBuild(project));
+    }
+
+    @Test
+    public void testRecordsResults() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        assertNull(LastBuildIndex.get().getLastResult(project.getFullName()));
+
+        j.buildAndAssertSuccess(project);
+        assertEquals("SUCCESS", LastBuildIndex.get().getLastResult(project.getFullName()));
+
+        project.renameTo("project2");
+        assertEquals("SUCCESS", LastBuildIndex.get().getLastResult("project2"));
+        assertNull(LastBuildIndex.get().getLastResult("project1"));
+    }
+
+    @Test
+    public void testFollowsRenamedAndDeletedJobs() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        FreeStyleBuild build = j.buildAndAssertSuccess(project);
+
+        project.renameTo("project2");
+        assertEquals(Long.valueOf(build.getTimeInMillis()), LastBuildIndex.get().getLastBuild(project));
+
+        project.delete();
+        assertNull(LastBuildIndex.get().getLastBuild(project));
+    }
+
+    @Test
+    public void testKeepsLatestBuild() {
+        LastBuildIndex index = LastBuildIndex.get();
+        index.record("project1", 2000L);
+        index.record("project1", 1000L);
+        index.move("project1", "folder/project1");
+        index.remove("folder");
+        index.record("project2", 1000L);
+        index.record("project2", 3000L);
+        assertEquals(Long.valueOf(3000L), index.getLastBuild("project2"));
+        assertNull(index.getLastBuild("project1"));
+        assertNull(index.getLastBuild("folder/project1"));
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Victor Martinez
+ */
+public class MaintenancePolicyTest {
+
+    private static final long QUARTER = TimeUnit.MINUTES.toMillis(15);
+
+    @Test
+    public void testNextRunIsStrictlyLater() {
+        MaintenancePolicy policy = new MaintenancePolicy("policy", "*/15 * * * *", 1, null, null, MaintenanceAction.DISABLE);
+        long time = new GregorianCalendar(2015, Calendar.JANUARY, 1, 10, 15, 0).getTimeInMillis();
+
+        assertEquals(time, policy.nextRun(time - 1));
+        assertEquals(time + QUARTER, policy.nextRun(time));
+        assertEquals(time + QUARTER, policy.nextRun(time + 1000));
+    }
+
+    @Test
+    public void testSeveralSchedules() {
+        MaintenancePolicy policy = new MaintenancePolicy("policy", "# comment\n0 * * * *\n\n30 * * * *", 1, null, null, MaintenanceAction.DISABLE);
+        long time = new GregorianCalendar(2015, Calendar.JANUARY, 1, 10, 0, 0).getTimeInMillis();
+
+        assertEquals(time + 2 * QUARTER, policy.nextRun(time));
+        assertEquals(time + 4 * QUARTER, policy.nextRun(time + 2 * QUARTER));
+    }
+
+    @Test
+    public void testInvalidScheduleNeverRuns() {
+        MaintenancePolicy policy = new MaintenancePolicy("policy", "0 * * * *\nnot a schedule", 1, null, null, MaintenanceAction.DISABLE);
+        assertEquals(Long.MAX_VALUE, policy.nextRun(System.currentTimeMillis()));
+        assertEquals(Long.MAX_VALUE, new MaintenancePolicy("policy", "", 1, null, null, null).nextRun(0));
+    }
+}
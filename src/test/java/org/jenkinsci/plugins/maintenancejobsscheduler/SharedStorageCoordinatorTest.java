@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class SharedStorageCoordinatorTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SharedStorageCoordinator coordinator;
+
+    @Before
+    public void setUp() {
+        GlobalPluginConfiguration.get().setSharedDirectory(folder.getRoot().getAbsolutePath());
+        coordinator = SharedStorageCoordinator.get();
+    }
+
+    @Test
+    public void testLeaseHeldByOneInstance() throws Exception {
+        assertTrue(coordinator.acquireLease("reclaim", 60000));
+        // renewed by its holder
+        assertTrue(coordinator.acquireLease("reclaim", 60000));
+
+        File lease = new File(folder.getRoot(), "reclaim.lease");
+        write(lease, "other\t" + (System.currentTimeMillis() + 60000) + "\n");
+        assertFalse(coordinator.acquireLease("reclaim", 60000));
+
+        write(lease, "other\t" + (System.currentTimeMillis() - 1) + "\n");
+        assertTrue(coordinator.acquireLease("reclaim", 60000));
+    }
+
+    @Test
+    public void testLeaseReleasedByItsHolderOnly() throws Exception {
+        File lease = new File(folder.getRoot(), "reclaim.lease");
+        assertTrue(coordinator.acquireLease("reclaim", 60000));
+        coordinator.releaseLease("reclaim");
+        assertEquals(0, lease.length());
+
+        write(lease, "other\t" + (System.currentTimeMillis() + 60000) + "\n");
+        coordinator.releaseLease("reclaim");
+        assertFalse(coordinator.acquireLease("reclaim", 60000));
+    }
+
+    @Test
+    public void testPublishesSweeps() throws Exception {
+        File journal = folder.newFile("journal.log");
+        write(journal, "1\tSTART\tsweep\n2\tEND\tsweep\n");
+        coordinator.publish(journal);
+        coordinator.publish(journal);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        coordinator.writeSummary(out);
+        String prefix = coordinator.getInstanceId() + "\t";
+        String sweep = prefix + "1\tSTART\tsweep\n" + prefix + "2\tEND\tsweep\n";
+        assertEquals(sweep + sweep, out.toString("UTF-8"));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
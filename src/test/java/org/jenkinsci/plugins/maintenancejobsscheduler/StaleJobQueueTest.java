@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Victor Martinez
+ */
+public class StaleJobQueueTest {
+
+    private StaleJobQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new StaleJobQueue();
+    }
+
+    @Test
+    public void testPollsOldestBuildsFirst() {
+        queue.offer("project1", 3000L);
+        queue.offer("project2", 1000L);
+        queue.offer("project3", 2000L);
+
+        assertEquals(Arrays.asList("project2", "project3"), queue.poll(2500L));
+        assertEquals(Collections.<String>emptyList(), queue.poll(2500L));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testNewerBuildReplacesQueuedOne() {
+        queue.offer("project1", 1000L);
+        queue.offer("project1", 5000L);
+
+        assertEquals(Collections.<String>emptyList(), queue.poll(2500L));
+        assertEquals(Arrays.asList("project1"), queue.poll(6000L));
+    }
+
+    @Test
+    public void testFollowsMovedAndDeletedJobs() {
+        queue.offer("folder/project1", 1000L);
+        queue.offer("folder/project2", 2000L);
+        queue.offer("project3", 3000L);
+
+        queue.move("folder", "team");
+        queue.remove("project3");
+
+        assertEquals(Arrays.asList("team/project1", "team/project2"), queue.poll(6000L));
+    }
+}
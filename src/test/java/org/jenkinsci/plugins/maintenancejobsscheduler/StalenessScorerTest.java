@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.Job;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Victor Martinez
+ */
+public class StalenessScorerTest {
+
+    @Test
+    public void testFindsRecentActivity() {
+        StalenessSignal none = new FixedSignal(null, true);
+        StalenessSignal old = new FixedSignal(1000L, true);
+        StalenessSignal recent = new FixedSignal(5000L, true);
+        StalenessScorer scorer = new StalenessScorer(Arrays.asList(none, old, recent));
+        assertSame(recent, scorer.findActivity(null, 2000));
+        assertSame(old, scorer.findActivity(null, 1000));
+        assertNull(scorer.findActivity(null, 6000));
+    }
+
+    @Test
+    public void testIgnoresDisabledSignals() {
+        StalenessScorer scorer = new StalenessScorer(Arrays.asList(new FixedSignal(5000L, false)));
+        assertNull(scorer.findActivity(null, 2000));
+    }
+
+    private static final class FixedSignal extends StalenessSignal {
+        private final Long lastActivity;
+        private final boolean enabled;
+
+        FixedSignal(Long lastActivity, boolean enabled) {
+            this.lastActivity = lastActivity;
+            this.enabled = enabled;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "fixed";
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public Long getLastActivity(Job<?, ?> job) {
+            return lastActivity;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepCriteriaTest {
+
+    private static final long NOW = 1450000000000L;
+
+    private static long daysAgo(int days) {
+        return NOW - TimeUnit.DAYS.toMillis(days);
+    }
+
+    @Test
+    public void testAgesAboveTwentyFourDays() {
+        SweepCriteria criteria = new SweepCriteria(365, null, "", MaintenanceAction.DISABLE, NOW);
+        assertEquals(daysAgo(365), criteria.getPurgeTime());
+        assertEquals(SweepDecision.RECENT, criteria.evaluate("job", daysAgo(30), false));
+        assertEquals(SweepDecision.RECENT, criteria.evaluate("job", daysAgo(364), false));
+        assertEquals(SweepDecision.DISABLE, criteria.evaluate("job", daysAgo(366), false));
+    }
+
+    @Test
+    public void testAgesOfDecades() {
+        SweepCriteria criteria = new SweepCriteria(36500, null, "", MaintenanceAction.REMOVE, NOW);
+        assertEquals(daysAgo(36500), criteria.getPurgeTime());
+        assertEquals(SweepDecision.RECENT, criteria.evaluate("job", 0L, false));
+    }
+
+    @Test
+    public void testAgesAreMeasuredFromTheGivenTime() {
+        SweepCriteria criteria = new SweepCriteria(1, null, "", MaintenanceAction.DISABLE, NOW);
+        assertEquals(SweepDecision.RECENT, criteria.evaluate("job", NOW - TimeUnit.HOURS.toMillis(23), false));
+        assertEquals(SweepDecision.DISABLE, criteria.evaluate("job", NOW - TimeUnit.HOURS.toMillis(25), false));
+        assertEquals(SweepDecision.NO_BUILDS, criteria.evaluate("job", null, false));
+    }
+}
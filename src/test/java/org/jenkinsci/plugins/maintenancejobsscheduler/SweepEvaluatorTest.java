@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepEvaluatorTest {
+
+    @Test
+    public void testKeepsTheOrderOfTheJobs() throws Exception {
+        List<String> names = new ArrayList<String>();
+        List<SweepEvaluator.Task<String>> tasks = new ArrayList<SweepEvaluator.Task<String>>();
+        for (int i = 0; i < 50; i++) {
+            final String name = "job" + i;
+            final int delay = (50 - i) % 7;
+            names.add(name);
+            tasks.add(new SweepEvaluator.Task<String>() {
+                public String call() throws InterruptedException {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                    return name;
+                }
+            });
+        }
+        assertEquals(names, new SweepEvaluator("test", 8).evaluate(names, tasks));
+    }
+
+    @Test
+    public void testBoundsTheEvaluationsInFlight() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger highest = new AtomicInteger();
+        List<String> names = new ArrayList<String>();
+        List<SweepEvaluator.Task<String>> tasks = new ArrayList<SweepEvaluator.Task<String>>();
+        for (int i = 0; i < 40; i++) {
+            names.add("job" + i);
+            tasks.add(new SweepEvaluator.Task<String>() {
+                public String call() throws InterruptedException {
+                    int now = running.incrementAndGet();
+                    synchronized (highest) {
+                        highest.set(Math.max(highest.get(), now));
+                    }
+                    TimeUnit.MILLISECONDS.sleep(2);
+                    running.decrementAndGet();
+                    return "ok";
+                }
+            });
+        }
+        assertEquals(40, new SweepEvaluator("test", 4).evaluate(names, tasks).size());
+        assertTrue(highest.get() + " in flight", highest.get() <= 4);
+    }
+
+    @Test
+    public void testSkipsFailuresAndMissingJobs() throws Exception {
+        SweepEvaluator evaluator = new SweepEvaluator("test", 2);
+        List<SweepEvaluator.Task<String>> tasks = Arrays.<SweepEvaluator.Task<String>>asList(
+                new SweepEvaluator.Task<String>() {
+                    public String call() throws IOException {
+                        throw new IOException("unreadable");
+                    }
+                },
+                new SweepEvaluator.Task<String>() {
+                    public String call() {
+                        return null;
+                    }
+                },
+                new SweepEvaluator.Task<String>() {
+                    public String call() {
+                        return "c";
+                    }
+                });
+        assertEquals(Arrays.asList("c"), evaluator.evaluate(Arrays.asList("a", "b", "c"), tasks));
+        assertEquals(1, evaluator.getFailures());
+    }
+}
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepJournalTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testUnfinishedSweep() throws Exception {
+        Map<String, List<String>> plan = new LinkedHashMap<String, List<String>>();
+        plan.put("project1", Arrays.asList("default"));
+        plan.put("folder/project2", Arrays.asList("default", "sandboxes"));
+        plan.put("project3", Arrays.asList("sandboxes"));
+
+        SweepJournal journal = SweepJournal.start("sweep", plan);
+        journal.done("project1", "DISABLE", SweepJournal.OK);
+        journal.done("project3", "REMOVE", SweepJournal.FAILED);
+        journal.close();
+
+        Map<String, List<String>> unfinished = SweepJournal.readUnfinished();
+        assertEquals(Arrays.asList("folder/project2", "project3"), Arrays.asList(unfinished.keySet().toArray()));
+        assertEquals(Arrays.asList("default", "sandboxes"), unfinished.get("folder/project2"));
+    }
+
+    @Test
+    public void testFinishedSweep() throws Exception {
+        Map<String, List<String>> plan = new LinkedHashMap<String, List<String>>();
+        plan.put("project1", Arrays.asList("default"));
+
+        SweepJournal journal = SweepJournal.start("sweep", plan);
+        journal.finish();
+
+        assertFalse(SweepJournal.getFile().exists());
+        assertTrue(new File(SweepJournal.getFile().getPath() + ".previous").exists());
+        assertEquals(Collections.<String, List<String>>emptyMap(), SweepJournal.readUnfinished());
+    }
+}
@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepPacerTest {
+
+    @Test
+    public void testLoadIsTheBusiestMeasure() {
+        SweepPacer pacer = new SweepPacer(Long.MAX_VALUE, true, 80, 10, 100);
+        assertEquals(0.5, pacer.getLoad(40, 2, 10), 0.001);
+        assertEquals(1.5, pacer.getLoad(0, 15, 10), 0.001);
+        assertEquals(2.0, pacer.getLoad(20, 0, 200), 0.001);
+    }
+
+    @Test
+    public void testIgnoresTheMeasuresWithoutThreshold() {
+        SweepPacer pacer = new SweepPacer(Long.MAX_VALUE, true, 0, 10, 0);
+        assertEquals(0.2, pacer.getLoad(100, 2, 5000), 0.001);
+    }
+
+    @Test
+    public void testSlowsDownAboveHalfTheThresholds() {
+        assertEquals(0, SweepPacer.getDelay(0.3));
+        assertEquals(0, SweepPacer.getDelay(0.5));
+        assertEquals(500, SweepPacer.getDelay(0.75));
+        assertTrue(SweepPacer.getDelay(0.99) < 1000);
+    }
+
+    @Test
+    public void testStopsAtTheEndOfTheWindow() throws Exception {
+        new SweepPacer(Long.MAX_VALUE, false, 80, 10, 100).pace();
+        SweepPacer pacer = new SweepPacer(System.currentTimeMillis() - 1, false, 80, 10, 100);
+        assertTrue(pacer.isWindowClosed());
+        try {
+            pacer.pace();
+            fail("the window is over");
+        } catch (SweepPacer.WindowClosedException e) {
+            assertFalse(new SweepPacer(Long.MAX_VALUE, false, 80, 10, 100).isWindowClosed());
+        }
+    }
+
+    @Test
+    public void testParsesTheTimeOfDay() {
+        assertEquals(6 * 60 + 30, SweepPacer.parseTimeOfDay("06:30"));
+        assertEquals(23 * 60 + 59, SweepPacer.parseTimeOfDay(" 23:59 "));
+        assertEquals(5, SweepPacer.parseTimeOfDay("0:05"));
+        assertEquals(-1, SweepPacer.parseTimeOfDay(null));
+        assertEquals(-1, SweepPacer.parseTimeOfDay("24:00"));
+        assertEquals(-1, SweepPacer.parseTimeOfDay("90"));
+    }
+
+    @Test
+    public void testWindowEndsAtTheNextTimeOfDayAfterTheStart() {
+        Calendar start = Calendar.getInstance();
+        start.set(2024, Calendar.MARCH, 1, 23, 0, 0);
+        start.set(Calendar.MILLISECOND, 0);
+        Calendar end = (Calendar) start.clone();
+        end.set(2024, Calendar.MARCH, 2, 6, 30, 0);
+        assertEquals(end.getTimeInMillis(), SweepPacer.getWindowEnd(6 * 60 + 30, start.getTimeInMillis()));
+        end.set(2024, Calendar.MARCH, 1, 23, 45, 0);
+        assertEquals(end.getTimeInMillis(), SweepPacer.getWindowEnd(23 * 60 + 45, start.getTimeInMillis()));
+        end.set(2024, Calendar.MARCH, 2, 23, 0, 0);
+        assertEquals(end.getTimeInMillis(), SweepPacer.getWindowEnd(23 * 60, start.getTimeInMillis()));
+    }
+}
@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepPreviewTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testPreviewDoesNotChangeJobs() throws Exception {
+        FreeStyleProject project1 = j.createFreeStyleProject("project1");
+        FreeStyleProject project2 = j.createFreeStyleProject("project2");
+        FreeStyleProject project3 = j.createFreeStyleProject("project3");
+        j.createFreeStyleProject("project4");
+        LastBuildIndex.get().record(project1.getFullName(), 0);
+        LastBuildIndex.get().record(project2.getFullName(), 0);
+        LastBuildIndex.get().record(project3.getFullName(), System.currentTimeMillis());
+
+        StringWriter out = new StringWriter();
+        int next = new SweepPreview(new SweepCriteria(1, "project2", false)).write(out, SweepPreview.Format.CSV, 0, 10, Long.MAX_VALUE);
+        assertEquals(-1, next);
+        String csv = out.toString();
+        assertTrue(csv, csv.contains("project1,0,"));
+        assertTrue(csv, csv.contains(",DISABLE\n"));
+        assertTrue(csv, csv.contains(",EXCLUDED\n"));
+        assertTrue(csv, csv.contains(",RECENT\n"));
+        assertTrue(csv, csv.contains("project4,,,NO_BUILDS\n"));
+        assertFalse(project1.isDisabled());
+    }
+
+    @Test
+    public void testPagination() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            j.createFreeStyleProject("project" + i);
+        }
+        SweepPreview preview = new SweepPreview(new SweepCriteria(1, "", false));
+
+        StringWriter out = new StringWriter();
+        assertEquals(2, preview.write(out, SweepPreview.Format.JSON, 0, 2, Long.MAX_VALUE));
+        assertTrue(out.toString(), out.toString().startsWith("{\"start\":0,\"jobs\":[{\"job\":\"project0\""));
+        assertTrue(out.toString(), out.toString().endsWith("],\"next\":2}"));
+
+        out = new StringWriter();
+        assertEquals(-1, preview.write(out, SweepPreview.Format.JSON, 4, 2, Long.MAX_VALUE));
+        assertTrue(out.toString(), out.toString().endsWith("],\"next\":null}"));
+    }
+}
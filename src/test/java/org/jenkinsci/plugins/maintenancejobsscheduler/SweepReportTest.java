@@ -0,0 +1,61 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class SweepReportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPagesThroughTheRows() throws Exception {
+        File dir = folder.newFolder("reports");
+        SweepReport report = SweepReport.start(dir, "1000", 10);
+        for (int i = 0; i < 25; i++) {
+            report.add("folder/job" + i, i == 0 ? null : (long) i, i % 2 == 0 ? SweepDecision.DISABLE : SweepDecision.RECENT, "default", 5000);
+        }
+        report.add("broken", 3L, null, null, 0);
+        report.close();
+
+        StringWriter out = new StringWriter();
+        assertEquals(10, SweepReport.write(dir, "1000", out, true, 0, 10));
+        String[] lines = out.toString().split("\n");
+        assertEquals(11, lines.length);
+        assertEquals("folder/job0,,DISABLE,is disabled,default,5", lines[1]);
+        assertEquals("folder/job1,1,RECENT,is excluded since it has been built recently,default,5", lines[2]);
+
+        out = new StringWriter();
+        assertEquals(-1, SweepReport.write(dir, "1000", out, false, 20, 10));
+        assertTrue(out.toString(), out.toString().startsWith("{\"start\":20,\"jobs\":[{\"job\":\"folder/job20\",\"lastBuild\":20,"));
+        assertTrue(out.toString(), out.toString().endsWith("{\"job\":\"broken\",\"lastBuild\":3,\"decision\":\"FAILED\","
+                + "\"description\":\"couldn't be processed\",\"policy\":\"\",\"durationMicros\":0}],\"next\":null}"));
+
+        out = new StringWriter();
+        assertEquals(-1, SweepReport.write(dir, "1000", out, false, 30, 10));
+        assertEquals("{\"start\":30,\"jobs\":[],\"next\":null}", out.toString());
+    }
+
+    @Test
+    public void testKeepsTheLastReports() throws Exception {
+        File dir = folder.newFolder("reports");
+        for (int run = 1000; run < 1005; run++) {
+            SweepReport.start(dir, String.valueOf(run), 3).close();
+        }
+        assertEquals(Arrays.asList("1004", "1003", "1002"), SweepReport.getRuns(dir));
+        assertFalse(SweepReport.exists(dir, "1001"));
+        assertFalse(SweepReport.exists(dir, "../1002"));
+    }
+}
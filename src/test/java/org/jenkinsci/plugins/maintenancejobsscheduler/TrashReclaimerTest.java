@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Victor Martinez
+ */
+public class TrashReclaimerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDeletesInTheBackground() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project1");
+        j.buildAndAssertSuccess(project);
+        File dir = project.getRootDir();
+
+        TrashReclaimer reclaimer = TrashReclaimer.get();
+        reclaimer.delete(project);
+        assertNull(j.jenkins.getItem("project1"));
+        assertFalse(dir.exists());
+        assertEquals(1, TrashReclaimer.getTrashDir().list().length);
+
+        long before = SweepMetrics.get().get(SweepMetrics.Counter.RECLAIMED_BYTES);
+        long reclaimed = reclaimer.reclaim();
+        assertTrue(reclaimed > 0);
+        assertEquals(before + reclaimed, SweepMetrics.get().get(SweepMetrics.Counter.RECLAIMED_BYTES));
+        assertEquals(0, TrashReclaimer.getTrashDir().list().length);
+    }
+
+    @Test
+    public void testStopsOnceTheLeaseIsTakenOver() throws Exception {
+        File shared = tmp.newFolder("shared");
+        GlobalPluginConfiguration.get().setSharedDirectory(shared.getAbsolutePath());
+        SharedStorageCoordinator coordinator = SharedStorageCoordinator.get();
+        TrashReclaimer.getTrashDir().mkdirs();
+        File entry = new File(TrashReclaimer.getTrashDir(), "1-1-project1");
+        entry.mkdir();
+        // held by another instance since this one took it, and renewed before each deletion
+        write(new File(shared, "reclaim.lease"), "other\t" + (System.currentTimeMillis() + 60000) + "\n");
+        try {
+            TrashReclaimer.get().reclaim(new TrashReclaimer.Lease(coordinator, 0));
+            fail("the lease is lost");
+        } catch (TrashReclaimer.LeaseLostException e) {
+            assertTrue(entry.exists());
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Victor Martinez
+ */
+public class UndoLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEscapesDescriptions() {
+        String description = "line 1\r\nline\t2 \\n not a newline\\";
+        String escaped = UndoLog.escape(description);
+        assertFalse(escaped.contains("\n"));
+        assertFalse(escaped.contains("\t"));
+        assertEquals(description, UndoLog.unescape(escaped));
+        assertEquals("", UndoLog.unescape(UndoLog.escape("")));
+    }
+
+    @Test
+    public void testKeepsTheLastRunsThatCanBeUndone() throws Exception {
+        File dir = folder.getRoot();
+        for (int i = 0; i < UndoLog.RETAINED_RUNS; i++) {
+            new File(dir, (2000 + i) + ".log").createNewFile();
+        }
+        new File(dir, "1000.log.undone").createNewFile();
+        new File(dir, "3000.log.undone").createNewFile();
+        // undone runs don't count
+        UndoLog.prune(dir);
+        assertEquals(UndoLog.RETAINED_RUNS, UndoLog.getRuns(dir).size());
+        assertTrue(new File(dir, "1000.log.undone").exists());
+
+        new File(dir, "3001.log").createNewFile();
+        UndoLog.prune(dir);
+        assertEquals(UndoLog.RETAINED_RUNS, UndoLog.getRuns(dir).size());
+        assertFalse(new File(dir, "2000.log").exists());
+        assertFalse(new File(dir, "1000.log.undone").exists());
+        assertTrue(new File(dir, "3000.log.undone").exists());
+    }
+}
@@ -2,15 +2,25 @@ package org.jenkinsci.plugins.maintenancejobsscheduler.integration;
 
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.ListView;
 import hudson.model.Result;
 import hudson.model.queue.QueueTaskFuture;
+import org.jenkinsci.plugins.maintenancejobsscheduler.GlobalPluginConfiguration;
+import org.jenkinsci.plugins.maintenancejobsscheduler.LastBuildIndex;
+import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenanceAction;
 import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenanceJobsPeriodicWork;
+import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenancePolicy;
+import org.jenkinsci.plugins.maintenancejobsscheduler.StalenessSignal;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
 import org.jvnet.hudson.test.recipes.LocalData;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
@@ -99,6 +109,20 @@ public class MaintenanceJobsPeriodicWorkThreadTest {
         assertEquals("description", project2.getDescription());
     }
 
+    @LocalData
+    @Test
+    public void testSavesOfTheMaintenanceAreNoActivity() throws IOException, InterruptedException {
+        FreeStyleProject project1 = j.jenkins.getItemByFullName("project1", FreeStyleProject.class);
+        StalenessSignal signal = StalenessSignal.all().get(StalenessSignal.ConfigChangeSignal.class);
+        assertNull(signal.getLastActivity(project1));
+
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(true, 365, "disabled", "", false);
+        waitUntilThreadEnds(work);
+        assertTrue(project1.isDisabled());
+        assertNull(signal.getLastActivity(project1));
+    }
+
     @LocalData
     @Test
     public void testWithOldJobsAndRemoveOption() throws IOException, InterruptedException, ExecutionException {
@@ -152,4 +176,78 @@ public class MaintenanceJobsPeriodicWorkThreadTest {
         assertEquals("description", project1.getDescription());
         assertEquals("description", project2.getDescription());
     }
+
+    @Test
+    public void testWithJobsInFolders() throws IOException, InterruptedException {
+        MockFolder folder = j.createFolder("folder");
+        FreeStyleProject project1 = folder.createProject(FreeStyleProject.class, "project1");
+        project1.setDescription("description");
+        FreeStyleProject project2 = folder.createProject(FreeStyleProject.class, "project2");
+        project2.setDescription("description");
+        LastBuildIndex.get().record(project1.getFullName(), 0);
+        LastBuildIndex.get().record(project2.getFullName(), 0);
+
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(true, 1, "disabled", "folder/.*2", false);
+        waitUntilThreadEnds(work);
+        assertTrue(project1.isDisabled());
+        assertNotEquals("description", project1.getDescription());
+        assertFalse(project2.isDisabled());
+        assertEquals("description", project2.getDescription());
+    }
+
+    @Test
+    public void testWithSeveralPolicies() throws IOException, InterruptedException {
+        FreeStyleProject feature = j.createFreeStyleProject("feature-1");
+        FreeStyleProject sandbox = j.createFreeStyleProject("sandbox-1");
+        FreeStyleProject other = j.createFreeStyleProject("other");
+        LastBuildIndex.get().record(feature.getFullName(), 0);
+        LastBuildIndex.get().record(sandbox.getFullName(), 0);
+        LastBuildIndex.get().record(other.getFullName(), 0);
+
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(Arrays.asList(
+                new MaintenancePolicy("features", "", 14, "feature-.*", "", MaintenanceAction.DISABLE),
+                new MaintenancePolicy("sandboxes", "", 90, "sandbox-.*", "", MaintenanceAction.REMOVE)), "disabled");
+        assertTrue(feature.isDisabled());
+        assertNull(j.jenkins.getItemByFullName("sandbox-1"));
+        assertFalse(other.isDisabled());
+    }
+
+    @Test
+    public void testWithConcurrentEvaluation() throws IOException, InterruptedException {
+        GlobalPluginConfiguration.get().setEvaluationThreads(8);
+        List<FreeStyleProject> projects = new ArrayList<FreeStyleProject>();
+        for (int i = 0; i < 20; i++) {
+            FreeStyleProject project = j.createFreeStyleProject("project" + i);
+            LastBuildIndex.get().record(project.getFullName(), 0);
+            projects.add(project);
+        }
+
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(Arrays.asList(new MaintenancePolicy("all", "", 1, "", "project1", MaintenanceAction.DISABLE)), "disabled");
+        for (FreeStyleProject project : projects) {
+            assertEquals(project.getName(), !project.getName().equals("project1"), project.isDisabled());
+        }
+    }
+
+    @Test
+    public void testWithJobsAddedToASelectedView() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project");
+        LastBuildIndex.get().record(project.getFullName(), 0);
+        ListView view = new ListView("Old");
+        j.jenkins.addView(view);
+        MaintenancePolicy policy = new MaintenancePolicy("old", "", 1, "", "", MaintenanceAction.DISABLE);
+        policy.setSelector("view:Old");
+
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(Arrays.asList(policy), "disabled");
+        assertFalse(project.isDisabled());
+
+        // not selected so far, the job is queued again once its views change
+        view.add(project);
+        j.jenkins.save();
+        work.execute(Arrays.asList(policy), "disabled");
+        assertTrue(project.isDisabled());
+    }
 }
@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.maintenancejobsscheduler.integration;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.TopLevelItem;
+import org.jenkinsci.plugins.maintenancejobsscheduler.LastBuildIndex;
+import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenanceAction;
+import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenanceJobsPeriodicWork;
+import org.jenkinsci.plugins.maintenancejobsscheduler.MaintenancePolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sweeps thousands of jobs, made out of the job of the {@link MaintenanceJobsPeriodicWorkThreadTest} data,
+ * within a time and memory budget, so that scaling regressions fail the build.
+ *
+ * @author Victor Martinez
+ */
+public class MaintenanceSweepStressTest {
+
+    private static final int JOBS = 3000;
+    // days since the last build, a quarter of the jobs each
+    private static final int[] AGES = {10, 100, 400, 1000};
+    private static final long TIME_BUDGET = TimeUnit.SECONDS.toMillis(60);
+    private static final long MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testWithThousandsOfJobs() throws Exception {
+        long now = System.currentTimeMillis();
+        TopLevelItem[] jobs = new TopLevelItem[JOBS];
+        for (int i = 0; i < JOBS; i++) {
+            InputStream config = MaintenanceJobsPeriodicWorkThreadTest.class.getResourceAsStream(
+                    "MaintenanceJobsPeriodicWorkThreadTest/data/jobs/project1/config.xml");
+            try {
+                jobs[i] = j.jenkins.createProjectFromXML("project" + i, config);
+            } finally {
+                config.close();
+            }
+            LastBuildIndex.get().record(jobs[i].getFullName(), now - TimeUnit.DAYS.toMillis(AGES[i % AGES.length]));
+        }
+
+        long before = usedMemory();
+        long start = System.currentTimeMillis();
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        work.execute(Arrays.asList(new MaintenancePolicy("yearly", "", 365, "", "", MaintenanceAction.DISABLE)), "disabled", now);
+        long elapsed = System.currentTimeMillis() - start;
+        long grown = usedMemory() - before;
+
+        int disabled = 0;
+        for (int i = 0; i < JOBS; i++) {
+            FreeStyleProject project = (FreeStyleProject) jobs[i];
+            // the 100 days old jobs used to be disabled too, their age overflowing an int once in milliseconds
+            boolean stale = AGES[i % AGES.length] > 365;
+            assertEquals(project.getName(), stale, project.isDisabled());
+            if (project.isDisabled()) {
+                disabled++;
+            }
+        }
+        assertEquals(JOBS / 2, disabled);
+        assertTrue("The sweep took " + elapsed + " ms", elapsed < TIME_BUDGET);
+        assertTrue("The sweep kept " + grown + " bytes", grown < MEMORY_BUDGET);
+    }
+
+    @Test
+    public void testAgesAreMeasuredFromTheTimeOfTheSweep() throws Exception {
+        long now = System.currentTimeMillis();
+        FreeStyleProject project = j.createFreeStyleProject("project");
+        LastBuildIndex.get().record(project.getFullName(), now - TimeUnit.DAYS.toMillis(10));
+        MaintenanceJobsPeriodicWork work = new MaintenanceJobsPeriodicWork();
+        MaintenancePolicy policy = new MaintenancePolicy("monthly", "", 30, "", "", MaintenanceAction.DISABLE);
+
+        work.execute(Arrays.asList(policy), "disabled", now);
+        assertFalse(project.isDisabled());
+        work.execute(Arrays.asList(policy), "disabled", now + TimeUnit.DAYS.toMillis(30));
+        assertTrue(project.isDisabled());
+    }
+}